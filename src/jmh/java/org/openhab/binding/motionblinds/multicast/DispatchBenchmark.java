@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.net.NetworkAddressService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a running manager from the datagram to the device update listener: bursts of recorded
+ * <code>Report</code>s are sent to it on the loopback interface and every operation waits until the listener
+ * saw all of them.
+ * <p>
+ * Compares the execution modes with listeners that block like a thing handler waiting for I/O. Only the
+ * listeners run on virtual threads, so the modes differ in the dispatch only; on a Java 17 runtime
+ * {@link ExecutionMode#VIRTUAL} falls back to the shared pool and measures the same as
+ * {@link ExecutionMode#POOLED}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(DispatchBenchmark.BURST)
+public class DispatchBenchmark {
+    // one Report per device, updates of a device that still waits would be merged
+    static final int BURST = RecordedPayloads.DEVICES;
+
+    private static final int BIND_PORT = 39201;
+    private static final int TARGET_PORT = 39200;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(
+            mock(NetworkAddressService.class), MotionblindsMulticastManager.DEFAULT_MULTICAST_GROUP, BIND_PORT,
+            TARGET_PORT);
+    @Param({ "POOLED", "VIRTUAL" })
+    public ExecutionMode mode = ExecutionMode.POOLED;
+
+    /**
+     * Time the listener blocks for every update.
+     */
+    @Param({ "0", "100" })
+    public int listenerMicros;
+
+    private final Semaphore delivered = new Semaphore(0);
+    private ByteBuffer[] reports = new ByteBuffer[0];
+    private @Nullable DatagramChannel sender;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        reports = RecordedPayloads.datagrams(RecordedPayloads.REPORT);
+        long listenerNanos = TimeUnit.MICROSECONDS.toNanos(listenerMicros);
+        mcm.addDeviceUpdateListener((motor, type) -> {
+            if (listenerNanos > 0) {
+                LockSupport.parkNanos(listenerNanos);
+            }
+            delivered.release();
+        });
+        mcm.start(mode);
+        DatagramChannel sender = DatagramChannel.open()
+                .connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), BIND_PORT));
+        this.sender = sender;
+        awaitStarted(sender);
+    }
+
+    /**
+     * Waits until the event loop has bound its socket and delivers updates.
+     */
+    private void awaitStarted(DatagramChannel sender) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (System.nanoTime() - deadline < 0) {
+            try {
+                sender.write(reports[0].rewind());
+            } catch (PortUnreachableException e) {
+                // not bound yet
+            }
+            if (delivered.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                // earlier probes may still be on their way
+                Thread.sleep(100);
+                delivered.drainPermits();
+                return;
+            }
+        }
+        throw new IllegalStateException("manager not started");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mcm.stop();
+        DatagramChannel sender = this.sender;
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Benchmark
+    public void burst() throws IOException, InterruptedException {
+        DatagramChannel sender = this.sender;
+        if (sender == null) {
+            throw new IllegalStateException("not set up");
+        }
+        for (int i = 0; i < BURST; i++) {
+            sender.write(reports[i & (reports.length - 1)].rewind());
+        }
+        if (!delivered.tryAcquire(BURST, TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("updates lost, " + delivered.availablePermits() + " of " + BURST
+                    + " delivered");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.mockito.Mockito.mock;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+import org.openhab.core.net.NetworkAddressService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the receive side of the event loop for recorded datagrams: decoding, updating the motor and
+ * handing the update to the listeners through the {@link DeviceUpdateRing}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDecodeBenchmark {
+    private final MotionblindsMessageDecoder decoder = new MotionblindsMessageDecoder();
+    private final MotionblindsMessage message = new MotionblindsMessage();
+    private final CurtainMotor motor = new CurtainMotor();
+    private final MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(
+            mock(NetworkAddressService.class));
+    private final DeviceUpdateListener listener = (motor, type) -> {
+    };
+    private ByteBuffer[] heartbeats = new ByteBuffer[0];
+    private ByteBuffer[] mixed = new ByteBuffer[0];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        heartbeats = RecordedPayloads.datagrams(RecordedPayloads.HEARTBEAT);
+        mixed = RecordedPayloads.mixed();
+        mcm.addDeviceUpdateListener(listener);
+    }
+
+    @Benchmark
+    public boolean decodeHeartbeat() {
+        return decoder.decode(heartbeats[next++ & (heartbeats.length - 1)], message);
+    }
+
+    @Benchmark
+    public int updateMotorFromHeartbeat() {
+        decoder.decode(heartbeats[next++ & (heartbeats.length - 1)], message);
+        motor.update(message);
+        return motor.getCurrentPosition();
+    }
+
+    /**
+     * Decodes, updates the registry and publishes to the ring like the event loop, then drains the ring like
+     * the dispatch task.
+     */
+    @Benchmark
+    public int dealWithData() {
+        decoder.decode(mixed[next++ % mixed.length], message);
+        mcm.dealWithData(message);
+        return mcm.getUpdateRing().drain(listener);
+    }
+}
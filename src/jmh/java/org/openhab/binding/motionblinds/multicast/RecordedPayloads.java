@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Datagrams recorded from a gateway and its motors, repeated for several devices by changing the last byte of
+ * the MAC.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+final class RecordedPayloads {
+    static final int DEVICES = 64;
+
+    static final String HEARTBEAT = "{\"msgType\":\"Heartbeat\",\"mac\":\"483fda1eb1%02x\",\"deviceType\":"
+            + "\"22000000\",\"token\":\"37412C478E0FBEAB\",\"data\":{\"operation\":2,\"direction\":1,"
+            + "\"currentPosition\":99,\"targetPosition\":100,\"currentState\":3,\"switchMode\":0,"
+            + "\"controlMode\":0,\"RSSI\":-52}}";
+    static final String REPORT = "{\"msgType\":\"Report\",\"mac\":\"f0fe6b0d000000%02x\",\"deviceType\":"
+            + "\"10000000\",\"data\":{\"type\":1,\"operation\":2,\"currentPosition\":42,\"currentAngle\":0,"
+            + "\"currentState\":2,\"voltageMode\":1,\"batteryLevel\":1160,\"wirelessMode\":1,\"RSSI\":-68}}";
+    static final String WRITE_DEVICE_ACK = "{\"msgType\":\"WriteDeviceAck\",\"mac\":\"f0fe6b0d000000%02x\","
+            + "\"deviceType\":\"10000000\",\"msgID\":\"20240301120000123\",\"data\":{\"type\":1,\"operation\":1,"
+            + "\"currentPosition\":0,\"currentAngle\":0,\"currentState\":2,\"voltageMode\":1,"
+            + "\"batteryLevel\":1160,\"wirelessMode\":1,\"RSSI\":-68}}";
+
+    private RecordedPayloads() {
+    }
+
+    /**
+     * @return the datagrams of the template for all devices, as received by the event loop
+     */
+    static ByteBuffer[] datagrams(String template) {
+        ByteBuffer[] datagrams = new ByteBuffer[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            byte[] bytes = String.format(template, i).getBytes(StandardCharsets.US_ASCII);
+            datagrams[i] = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+        return datagrams;
+    }
+
+    /**
+     * @return the datagrams of all templates for all devices, interleaved
+     */
+    static ByteBuffer[] mixed() {
+        ByteBuffer[] heartbeats = datagrams(HEARTBEAT);
+        ByteBuffer[] reports = datagrams(REPORT);
+        ByteBuffer[] acks = datagrams(WRITE_DEVICE_ACK);
+        ByteBuffer[] datagrams = new ByteBuffer[3 * DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            datagrams[3 * i] = heartbeats[i];
+            datagrams[3 * i + 1] = reports[i];
+            datagrams[3 * i + 2] = acks[i];
+        }
+        return datagrams;
+    }
+}
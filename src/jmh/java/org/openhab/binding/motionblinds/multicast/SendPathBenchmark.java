@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager.Pack;
+import org.openhab.core.net.NetworkAddressService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the send side up to the socket: encoding a command and passing it through a {@link SendQueue}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendPathBenchmark {
+    private static final String ACCESS_TOKEN = "F8A2C4E60B1D3F5A7C9E0B2D4F6A8C1E";
+    private static final byte[] COMMAND = new byte[128];
+
+    private final MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(
+            mock(NetworkAddressService.class));
+    private final MotionblindsCommandEncoder encoder = new MotionblindsCommandEncoder();
+    private final SendQueue queue = new SendQueue(50, 50);
+    private final CurtainMotor[] motors = new CurtainMotor[RecordedPayloads.DEVICES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < motors.length; i++) {
+            motors[i] = mcm.getDeviceRegistry().getOrCreate(String.format("f0fe6b0d000000%02x", i));
+            motors[i].setDeviceType("10000000");
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeWriteDevice() {
+        int i = next++;
+        return encoder.writeTargetPosition(motors[i & (motors.length - 1)], ACCESS_TOKEN, i % 101);
+    }
+
+    @Benchmark
+    public @Nullable Pack offerAndPoll() {
+        queue.offer(mcm.new Pack(3, COMMAND, motors[next++ & (motors.length - 1)].getMac(), true));
+        return queue.poll(SendQueue.Lane.INTERACTIVE);
+    }
+
+    /**
+     * Offers a burst of commands for the same motor, which replace each other in the queue.
+     */
+    @Benchmark
+    public @Nullable Pack offerCoalescedAndPoll() {
+        String mac = motors[next++ & (motors.length - 1)].getMac();
+        for (int i = 0; i < 4; i++) {
+            queue.offer(mcm.new Pack(3, COMMAND, mac, true));
+        }
+        return queue.poll(SendQueue.Lane.INTERACTIVE);
+    }
+}
@@ -12,31 +12,60 @@
  */
 package org.openhab.binding.motionblinds.dto;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonObject;
-
 /**
  * The {@link CurtainMotor} is model of device
  * handlers.
+ * <p>
+ * The reported values are packed into one <code>long</code> state and one <code>int</code> of
+ * settings, see {@link #getState()}. Both are only written by the multicast event loop and read
+ * without locks; a single read of the state gives values of the same message. Values that were not
+ * reported yet read as -1, the RSSI as 0.
  *
  * @author Petr Shatsillo - Initial contribution
  */
 @NonNullByDefault
 public class CurtainMotor {
+    // state layout: one byte per position, angle and RSSI, four bits per state, operation and kind
+    private static final int CURRENT_POSITION_SHIFT = 0;
+    private static final int TARGET_POSITION_SHIFT = 8;
+    private static final int CURRENT_ANGLE_SHIFT = 16;
+    private static final int CURRENT_POSITION_BOTTOM_SHIFT = 24;
+    private static final int TARGET_POSITION_BOTTOM_SHIFT = 32;
+    private static final int RSSI_SHIFT = 40;
+    private static final int CURRENT_STATE_SHIFT = 48;
+    private static final int OPERATION_SHIFT = 52;
+    private static final int KIND_SHIFT = 56;
+    // settings layout: one byte each
+    private static final int CONTROL_MODE_SHIFT = 0;
+    private static final int SWITCH_MODE_SHIFT = 8;
+    private static final int DIRECTION_SHIFT = 16;
+
+    private static final int BYTE_UNKNOWN = 0xff;
+    private static final int NIBBLE_UNKNOWN = 0xf;
+    // operations reported while the motor runs, stop is 2
+    private static final int OPERATION_CLOSE = 0;
+    private static final int OPERATION_OPEN = 1;
+    public static final long INITIAL_STATE = pack(pack(pack(pack(pack(pack(pack(pack(0, CURRENT_POSITION_SHIFT, -1),
+            TARGET_POSITION_SHIFT, -1), CURRENT_ANGLE_SHIFT, -1), CURRENT_POSITION_BOTTOM_SHIFT, -1),
+            TARGET_POSITION_BOTTOM_SHIFT, -1), CURRENT_STATE_SHIFT, -1, NIBBLE_UNKNOWN), OPERATION_SHIFT, -1,
+            NIBBLE_UNKNOWN), KIND_SHIFT, DeviceKind.UNKNOWN.ordinal(), NIBBLE_UNKNOWN);
+    public static final int INITIAL_SETTINGS = (int) pack(pack(pack(0, CONTROL_MODE_SHIFT, -1), SWITCH_MODE_SHIFT, -1),
+            DIRECTION_SHIFT, -1);
+
     private final Logger logger = LoggerFactory.getLogger(CurtainMotor.class);
     String mac = "";
-    String deviceType = "";
-    int controlMode = -1;
-    int rssi = 0;
-    int currentPosition = -1;
-    int targetPosition = -1;
-    int currentState = -1;
-    int operation = -1;
-    int switchMode = -1;
-    int direction = -1;
+    String gatewayMac = "";
+    volatile String deviceType = "";
+    private volatile long state = INITIAL_STATE;
+    private volatile int settings = INITIAL_SETTINGS;
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private volatile long lastUpdate;
 
     public String getDeviceType() {
         return deviceType;
@@ -44,70 +73,99 @@ public class CurtainMotor {
 
     public void setDeviceType(String deviceType) {
         this.deviceType = deviceType;
+        if (DeviceKind.isGatewayDeviceType(deviceType)) {
+            state = pack(state, KIND_SHIFT, DeviceKind.GATEWAY.ordinal(), NIBBLE_UNKNOWN);
+        }
     }
 
-    public int getControlMode() {
-        return controlMode;
+    /**
+     * @return the packed values of the last messages, read them with the static accessors such as
+     *         {@link #currentPosition(long)}
+     */
+    public long getState() {
+        return state;
     }
 
-    public void setControlMode(int controlMode) {
-        this.controlMode = controlMode;
+    public int getSettings() {
+        return settings;
     }
 
-    public int getRssi() {
-        return rssi;
+    /**
+     * Replaces the state and settings, for restoring a snapshot before the first message arrives.
+     */
+    public void restore(long state, int settings) {
+        this.state = state;
+        this.settings = settings;
     }
 
-    public void setRssi(int rssi) {
-        this.rssi = rssi;
+    public DeviceKind getKind() {
+        return kind(state);
     }
 
-    public int getCurrentPosition() {
-        return currentPosition;
+    /**
+     * @return <code>true</code> if this device is a hub rather than a motor
+     */
+    public boolean isGateway() {
+        return getKind() == DeviceKind.GATEWAY;
     }
 
-    public void setCurrentPosition(int currentPosition) {
-        this.currentPosition = currentPosition;
+    public int getControlMode() {
+        return unpack(settings, CONTROL_MODE_SHIFT, BYTE_UNKNOWN);
+    }
+
+    public int getRssi() {
+        return rssi(state);
+    }
+
+    public int getCurrentPosition() {
+        return currentPosition(state);
     }
 
     public int getTargetPosition() {
-        return targetPosition;
+        return targetPosition(state);
     }
 
-    public void setTargetPosition(int targetPosition) {
-        this.targetPosition = targetPosition;
+    /**
+     * @return the angle of the slats between 0 and 180
+     */
+    public int getCurrentAngle() {
+        return currentAngle(state);
     }
 
-    public int getCurrentState() {
-        return currentState;
+    /**
+     * @return the position of the bottom rail of a top-down/bottom-up blind, whose top rail is the
+     *         current position
+     */
+    public int getCurrentPositionBottom() {
+        return currentPositionBottom(state);
     }
 
-    public void setCurrentState(int currentState) {
-        this.currentState = currentState;
+    public int getTargetPositionBottom() {
+        return unpack(state, TARGET_POSITION_BOTTOM_SHIFT, BYTE_UNKNOWN);
     }
 
-    public int getOperation() {
-        return operation;
+    public int getCurrentState() {
+        return unpack(state, CURRENT_STATE_SHIFT, NIBBLE_UNKNOWN);
     }
 
-    public void setOperation(int operation) {
-        this.operation = operation;
+    public int getOperation() {
+        return unpack(state, OPERATION_SHIFT, NIBBLE_UNKNOWN);
     }
 
     public int getSwitchMode() {
-        return switchMode;
+        return unpack(settings, SWITCH_MODE_SHIFT, BYTE_UNKNOWN);
     }
 
-    public void setSwitchMode(int switchMode) {
-        this.switchMode = switchMode;
+    public int getDirection() {
+        return unpack(settings, DIRECTION_SHIFT, BYTE_UNKNOWN);
     }
 
-    public int getDirection() {
-        return direction;
+    public String getGatewayMac() {
+        return gatewayMac;
     }
 
-    public void setDirection(int direction) {
-        this.direction = direction;
+    public void setGatewayMac(String gatewayMac) {
+        this.gatewayMac = gatewayMac;
     }
 
     public String getMac() {
@@ -118,54 +176,138 @@ public class CurtainMotor {
         this.mac = mac;
     }
 
-    public void heartBeat(JsonObject data) {
-        try {
-            logger.debug("receive: {}", data);
-            if (data.get("mac") != null) {
-                mac = data.get("mac").getAsString();
-            }
-            if (data.get("deviceType") != null) {
-                deviceType = data.get("deviceType").getAsString();
-            }
-            if (data.getAsJsonObject("data") != null) {
-                JsonObject dataObj = data.getAsJsonObject("data");
-                if (dataObj.get("controlMode") != null) {
-                    controlMode = dataObj.get("controlMode").getAsInt();
-                    logger.debug("controlMode: {}", controlMode);
-                }
-                if (dataObj.get("RSSI") != null) {
-                    rssi = dataObj.get("RSSI").getAsInt();
-                    logger.debug("rssi: {}", rssi);
-                }
-                if (dataObj.get("currentPosition") != null) {
-                    currentPosition = dataObj.get("currentPosition").getAsInt();
-                    logger.debug("currentPosition: {}", currentPosition);
-                }
-                if (dataObj.get("targetPosition") != null) {
-                    targetPosition = dataObj.get("targetPosition").getAsInt();
-                    logger.debug("targetPosition: {}", targetPosition);
-                }
-                if (dataObj.get("currentState") != null) {
-                    currentState = dataObj.get("currentState").getAsInt();
-                    logger.debug("currentState: {}", currentState);
-                }
-                if (dataObj.get("operation") != null) {
-                    operation = dataObj.get("operation").getAsInt();
-                    logger.debug("operation: {}", operation);
-                }
-                if (dataObj.get("switchMode") != null) {
-                    switchMode = dataObj.get("switchMode").getAsInt();
-                    logger.debug("switchMode: {}", switchMode);
-                }
-                if (dataObj.get("direction") != null) {
-                    direction = dataObj.get("direction").getAsInt();
-                    logger.debug("direction: {}", direction);
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Curtain JSON read error: {} in data {}", e.getLocalizedMessage(), data);
+    /**
+     * @return {@link System#nanoTime()} of the last message applied to this motor, 0 if none was received
+     */
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * @return <code>true</code> if the motor reported that it is opening or closing towards a target
+     *         it has not reached yet; a motor stopped between positions is not moving
+     */
+    public boolean isMoving() {
+        long state = this.state;
+        int operation = unpack(state, OPERATION_SHIFT, NIBBLE_UNKNOWN);
+        int currentPosition = currentPosition(state);
+        int targetPosition = targetPosition(state);
+        return (operation == OPERATION_CLOSE || operation == OPERATION_OPEN) && targetPosition >= 0
+                && currentPosition >= 0 && Math.abs(targetPosition - currentPosition) > 1;
+    }
+
+    /**
+     * Marks updates of this motor as waiting for the listeners.
+     *
+     * @param types a bit per update type, see {@link MotionblindsMessage.Type#ordinal()}
+     * @return the types that were already waiting, 0 if none
+     */
+    public int markUpdatePending(int types) {
+        return pendingUpdates.getAndAccumulate(types, (pending, added) -> pending | added);
+    }
+
+    /**
+     * @return the update types that were waiting, which no longer are
+     */
+    public int takePendingUpdates() {
+        return pendingUpdates.getAndSet(0);
+    }
+
+    /**
+     * Applies the values of a decoded Heartbeat, Report, WriteDeviceAck or ReadDeviceAck message.
+     */
+    public void update(MotionblindsMessage data) {
+        lastUpdate = System.nanoTime();
+        if (!data.getDeviceType().isEmpty()) {
+            setDeviceType(data.getDeviceType());
+        }
+        long state = this.state;
+        if (data.has(MotionblindsMessage.RSSI)) {
+            state = pack(state, RSSI_SHIFT, data.getRssi() & BYTE_UNKNOWN, BYTE_UNKNOWN);
+        }
+        if (data.has(MotionblindsMessage.CURRENT_POSITION)) {
+            state = pack(state, CURRENT_POSITION_SHIFT, data.getCurrentPosition());
+        }
+        if (data.has(MotionblindsMessage.TARGET_POSITION)) {
+            state = pack(state, TARGET_POSITION_SHIFT, data.getTargetPosition());
+        }
+        if (data.has(MotionblindsMessage.CURRENT_ANGLE)) {
+            state = pack(state, CURRENT_ANGLE_SHIFT, data.getCurrentAngle());
+        }
+        if (data.has(MotionblindsMessage.CURRENT_POSITION_BOTTOM)) {
+            state = pack(state, CURRENT_POSITION_BOTTOM_SHIFT, data.getCurrentPositionBottom());
+        }
+        if (data.has(MotionblindsMessage.TARGET_POSITION_BOTTOM)) {
+            state = pack(state, TARGET_POSITION_BOTTOM_SHIFT, data.getTargetPositionBottom());
+        }
+        if (data.has(MotionblindsMessage.CURRENT_STATE)) {
+            state = pack(state, CURRENT_STATE_SHIFT, data.getCurrentState(), NIBBLE_UNKNOWN);
+        }
+        if (data.has(MotionblindsMessage.OPERATION)) {
+            state = pack(state, OPERATION_SHIFT, data.getOperation(), NIBBLE_UNKNOWN);
+        }
+        if (data.has(MotionblindsMessage.BLIND_TYPE) && kind(state) != DeviceKind.GATEWAY) {
+            state = pack(state, KIND_SHIFT, DeviceKind.ofBlindType(data.getBlindType()).ordinal(), NIBBLE_UNKNOWN);
+        }
+        this.state = state;
+        int settings = this.settings;
+        if (data.has(MotionblindsMessage.CONTROL_MODE)) {
+            settings = (int) pack(settings, CONTROL_MODE_SHIFT, data.getControlMode());
+        }
+        if (data.has(MotionblindsMessage.SWITCH_MODE)) {
+            settings = (int) pack(settings, SWITCH_MODE_SHIFT, data.getSwitchMode());
+        }
+        if (data.has(MotionblindsMessage.DIRECTION)) {
+            settings = (int) pack(settings, DIRECTION_SHIFT, data.getDirection());
+        }
+        this.settings = settings;
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} from {}: kind={} position={} target={} state={} operation={} rssi={}", data.getType(),
+                    mac, kind(state), currentPosition(state), targetPosition(state), getCurrentState(),
+                    getOperation(), rssi(state));
         }
         // 12:02:03.977 DEBUG org.openhab.binding.motionblinds.dto.CurtainMotor receive:
         // {"msgType":"Heartbeat","mac":"483fda1eb16e","deviceType":"22000000","token":"37412C478E0FBEAB","data":{"operation":2,"direction":1,"currentPosition":99,"targetPosition":100,"currentState":3,"switchMode":0,"controlMode":0,"RSSI":-52}}
     }
+
+    public static int currentPosition(long state) {
+        return unpack(state, CURRENT_POSITION_SHIFT, BYTE_UNKNOWN);
+    }
+
+    public static int targetPosition(long state) {
+        return unpack(state, TARGET_POSITION_SHIFT, BYTE_UNKNOWN);
+    }
+
+    public static int currentAngle(long state) {
+        return unpack(state, CURRENT_ANGLE_SHIFT, BYTE_UNKNOWN);
+    }
+
+    public static int currentPositionBottom(long state) {
+        return unpack(state, CURRENT_POSITION_BOTTOM_SHIFT, BYTE_UNKNOWN);
+    }
+
+    public static int rssi(long state) {
+        return (byte) (state >>> RSSI_SHIFT);
+    }
+
+    public static DeviceKind kind(long state) {
+        return DeviceKind.ofOrdinal((int) (state >>> KIND_SHIFT) & NIBBLE_UNKNOWN);
+    }
+
+    /**
+     * Stores a value between 0 and 254 in a byte, anything else as unknown.
+     */
+    private static long pack(long packed, int shift, int value) {
+        return pack(packed, shift, value, BYTE_UNKNOWN);
+    }
+
+    private static long pack(long packed, int shift, int value, int mask) {
+        long field = value >= 0 && value < mask ? value : mask;
+        return (packed & ~((long) mask << shift)) | (field << shift);
+    }
+
+    private static int unpack(long packed, int shift, int mask) {
+        int value = (int) (packed >>> shift) & mask;
+        return value == mask ? -1 : value;
+    }
 }
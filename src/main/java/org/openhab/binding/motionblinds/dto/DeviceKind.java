@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.dto;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link DeviceKind} tells which kind of device a MAC belongs to, and so which thing type and
+ * channels it gets.
+ * <p>
+ * Gateways are recognized by their <code>deviceType</code>. Motors share a few device types and are
+ * told apart by the <code>type</code> field of their data, which is only sent in answers to
+ * <code>ReadDevice</code> and in Reports.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public enum DeviceKind {
+    UNKNOWN,
+    GATEWAY,
+    ROLLER,
+    VENETIAN,
+    TOP_DOWN_BOTTOM_UP,
+    CURTAIN;
+
+    private static final String GATEWAY_DEVICE_TYPE_PREFIX = "02";
+    private static final DeviceKind[] KINDS = values();
+
+    public static boolean isGatewayDeviceType(String deviceType) {
+        return deviceType.startsWith(GATEWAY_DEVICE_TYPE_PREFIX);
+    }
+
+    /**
+     * Maps the <code>type</code> of a motor to its kind. Blinds without tilt or second rail are driven
+     * like rollers.
+     */
+    public static DeviceKind ofBlindType(int type) {
+        return switch (type) {
+            // venetian, Shangri-La and dimming blinds have slats
+            case 2, 5, 11 -> VENETIAN;
+            case 9 -> TOP_DOWN_BOTTOM_UP;
+            // curtains opening to both sides, to the left and to the right
+            case 12, 13, 14 -> CURTAIN;
+            default -> ROLLER;
+        };
+    }
+
+    static DeviceKind ofOrdinal(int ordinal) {
+        return ordinal < KINDS.length ? KINDS[ordinal] : UNKNOWN;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.dto;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link MotionblindsMessage} holds one decoded gateway message.
+ * <p>
+ * Instances are reused by the decoder for every datagram, so values must be copied out
+ * before the next message is decoded. Which of the numeric fields were present in the
+ * message is tracked in a bit mask, see {@link #has(int)}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsMessage {
+    public static final int CONTROL_MODE = 1;
+    public static final int RSSI = 1 << 1;
+    public static final int CURRENT_POSITION = 1 << 2;
+    public static final int TARGET_POSITION = 1 << 3;
+    public static final int CURRENT_STATE = 1 << 4;
+    public static final int OPERATION = 1 << 5;
+    public static final int SWITCH_MODE = 1 << 6;
+    public static final int DIRECTION = 1 << 7;
+    public static final int BLIND_TYPE = 1 << 8;
+    public static final int CURRENT_ANGLE = 1 << 9;
+    public static final int CURRENT_POSITION_BOTTOM = 1 << 10;
+    public static final int TARGET_POSITION_BOTTOM = 1 << 11;
+
+    public enum Type {
+        HEARTBEAT,
+        REPORT,
+        WRITE_DEVICE_ACK,
+        READ_DEVICE_ACK,
+        GET_DEVICE_LIST_ACK,
+        UNKNOWN
+    }
+
+    Type type = Type.UNKNOWN;
+    String mac = "";
+    String deviceType = "";
+    String token = "";
+    int fields;
+    int controlMode;
+    int rssi;
+    int currentPosition;
+    int targetPosition;
+    int currentState;
+    int operation;
+    int switchMode;
+    int direction;
+    int blindType;
+    int currentAngle;
+    int currentPositionBottom;
+    int targetPositionBottom;
+    int deviceCount;
+    String[] deviceMacs = new String[8];
+    String[] deviceTypes = new String[8];
+
+    public void reset() {
+        type = Type.UNKNOWN;
+        mac = "";
+        deviceType = "";
+        token = "";
+        fields = 0;
+        deviceCount = 0;
+    }
+
+    public boolean has(int field) {
+        return (fields & field) != 0;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getMac() {
+        return mac;
+    }
+
+    public void setMac(String mac) {
+        this.mac = mac;
+    }
+
+    public String getDeviceType() {
+        return deviceType;
+    }
+
+    public void setDeviceType(String deviceType) {
+        this.deviceType = deviceType;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Stores a numeric field of the <code>data</code> object and marks it as present.
+     */
+    public void set(int field, int value) {
+        switch (field) {
+            case CONTROL_MODE -> controlMode = value;
+            case RSSI -> rssi = value;
+            case CURRENT_POSITION -> currentPosition = value;
+            case TARGET_POSITION -> targetPosition = value;
+            case CURRENT_STATE -> currentState = value;
+            case OPERATION -> operation = value;
+            case SWITCH_MODE -> switchMode = value;
+            case DIRECTION -> direction = value;
+            case BLIND_TYPE -> blindType = value;
+            case CURRENT_ANGLE -> currentAngle = value;
+            case CURRENT_POSITION_BOTTOM -> currentPositionBottom = value;
+            case TARGET_POSITION_BOTTOM -> targetPositionBottom = value;
+            default -> {
+                return;
+            }
+        }
+        fields |= field;
+    }
+
+    public int getControlMode() {
+        return controlMode;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public int getCurrentPosition() {
+        return currentPosition;
+    }
+
+    public int getTargetPosition() {
+        return targetPosition;
+    }
+
+    public int getCurrentState() {
+        return currentState;
+    }
+
+    public int getOperation() {
+        return operation;
+    }
+
+    public int getSwitchMode() {
+        return switchMode;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the <code>type</code> of the motor, see {@link DeviceKind#ofBlindType(int)}
+     */
+    public int getBlindType() {
+        return blindType;
+    }
+
+    public int getCurrentAngle() {
+        return currentAngle;
+    }
+
+    public int getCurrentPositionBottom() {
+        return currentPositionBottom;
+    }
+
+    public int getTargetPositionBottom() {
+        return targetPositionBottom;
+    }
+
+    /**
+     * Adds an entry of the <code>GetDeviceListAck</code> device list.
+     */
+    public void addDevice(String mac, String deviceType) {
+        if (deviceCount == deviceMacs.length) {
+            deviceMacs = Arrays.copyOf(deviceMacs, deviceCount * 2);
+            deviceTypes = Arrays.copyOf(deviceTypes, deviceCount * 2);
+        }
+        deviceMacs[deviceCount] = mac;
+        deviceTypes[deviceCount] = deviceType;
+        deviceCount++;
+    }
+
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    public String getDeviceMac(int index) {
+        return deviceMacs[index];
+    }
+
+    public String getDeviceType(int index) {
+        return deviceTypes[index];
+    }
+}
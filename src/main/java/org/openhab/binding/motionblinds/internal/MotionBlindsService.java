@@ -12,14 +12,30 @@
  */
 package org.openhab.binding.motionblinds.internal;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+import org.openhab.binding.motionblinds.multicast.DeviceRegistrySnapshot;
+import org.openhab.binding.motionblinds.multicast.DeviceUpdateListener;
+import org.openhab.binding.motionblinds.multicast.ExecutionMode;
+import org.openhab.binding.motionblinds.multicast.GatewaySession;
+import org.openhab.binding.motionblinds.multicast.MotionblindsCommandEncoder;
 import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager;
+import org.openhab.binding.motionblinds.multicast.OverloadPolicy;
+import org.openhab.binding.motionblinds.multicast.SceneExecution;
+import org.openhab.core.OpenHAB;
 import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.events.Event;
 import org.openhab.core.events.EventSubscriber;
@@ -30,6 +46,7 @@ import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,25 +62,132 @@ import org.slf4j.LoggerFactory;
         EventSubscriber.class }, configurationPid = "org.openhab.motionblinds", property = Constants.SERVICE_PID
                 + "=org.openhab.motionblinds")
 public class MotionBlindsService implements EventSubscriber {
+    private static final long SNAPSHOT_FLUSH_SECONDS = 5;
+    private static final String CONFIG_EXECUTION_MODE = "executionMode";
+    private static final String CONFIG_OVERLOAD_POLICY = "overloadPolicy";
+
     private final Logger logger = LoggerFactory.getLogger(MotionBlindsService.class);
     MotionblindsMulticastManager mcm;
+    private final RefreshScheduler refreshScheduler;
+    private final MotionblindsCommandEncoder encoder = new MotionblindsCommandEncoder();
+    private final Map<String, MotionblindsHandler> handlers = new ConcurrentHashMap<>();
+    private final DeviceUpdateListener deviceListener = this::deviceUpdated;
     private @Nullable ScheduledFuture<?> refreshPollingJob;
+    private final DeviceRegistrySnapshot snapshot = new DeviceRegistrySnapshot(
+            Path.of(OpenHAB.getUserDataFolder(), "motionblinds", "devices.snapshot"));
+    private final ScheduledFuture<?> snapshotJob;
     protected final ScheduledExecutorService scheduler = ThreadPoolManager
             .getScheduledPool(ThreadPoolManager.THREAD_POOL_NAME_COMMON);
 
     @Activate
     public MotionBlindsService(@Reference NetworkAddressService networkAddressService, ComponentContext context) {
-        logger.error("MOTION STARTED");
         mcm = new MotionblindsMulticastManager(networkAddressService);
-        mcm.start();
+        // things get the last known state before the first Heartbeat arrives
+        int restored = snapshot.restore(mcm.getDeviceRegistry());
+        logger.debug("Restored {} devices from snapshot", restored);
+        mcm.addDeviceUpdateListener(deviceListener);
+        mcm.getUpdateRing().setPolicy(OverloadPolicy.parse(context.getProperties().get(CONFIG_OVERLOAD_POLICY)));
+        mcm.start(ExecutionMode.parse(context.getProperties().get(CONFIG_EXECUTION_MODE)));
+        logger.debug("Motion multicast manager started in {} mode", mcm.getExecutionMode());
+        snapshotJob = scheduler.scheduleWithFixedDelay(snapshot::flush, SNAPSHOT_FLUSH_SECONDS,
+                SNAPSHOT_FLUSH_SECONDS, TimeUnit.SECONDS);
+        refreshScheduler = new RefreshScheduler(mcm, encoder);
         ScheduledFuture<?> refreshPollingJob = this.refreshPollingJob;
         if (refreshPollingJob == null || refreshPollingJob.isCancelled()) {
-            this.refreshPollingJob = scheduler.scheduleWithFixedDelay(this::refresh, 5, 5, TimeUnit.SECONDS);
+            this.refreshPollingJob = scheduler.scheduleWithFixedDelay(refreshScheduler::tick, 5000,
+                    RefreshScheduler.TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deviceUpdated(CurtainMotor motor, MotionblindsMessage.Type type) {
+        snapshot.changed(motor);
+        MotionblindsHandler handler = handlers.get(motor.getMac());
+        if (handler != null) {
+            handler.deviceUpdated(motor);
+        }
+    }
+
+    public void registerHandler(String mac, MotionblindsHandler handler) {
+        handlers.put(mac, handler);
+    }
+
+    public void unregisterHandler(String mac, MotionblindsHandler handler) {
+        handlers.remove(mac, handler);
+    }
+
+    /**
+     * Sends a <code>WriteDevice</code> request setting one field of a motor, see the fields of the
+     * {@link MotionblindsCommandEncoder}. The AccessToken is derived from the key and the token of the
+     * motor's gateway, or of the motor itself for Wi-Fi motors.
+     *
+     * @return <code>false</code> if no token was received from the gateway yet or the request was
+     *         rejected
+     */
+    public boolean writeDevice(CurtainMotor motor, String apiKey, String field, int value) {
+        GatewaySession session = mcm.getSession(motor.getGatewayMac());
+        String accessToken = session != null ? encoder.accessToken(session, apiKey) : null;
+        if (accessToken == null) {
+            logger.debug("No AccessToken for {}, gateway token not received yet or invalid key", motor.getMac());
+            return false;
+        }
+        if (!mcm.send(motor.getMac(), encoder.writeDevice(motor, accessToken, field, value), 3)) {
+            return false;
+        }
+        refreshScheduler.expedite(motor.getMac());
+        return true;
+    }
+
+    /**
+     * Asks a gateway for its device list, or all gateways if the MAC is empty. The answer updates the
+     * device registry like any other message.
+     */
+    public boolean requestDeviceList(String gatewayMac) {
+        return mcm.sendRequest(gatewayMac, encoder.getDeviceList());
+    }
+
+    /**
+     * Moves several curtains to the same position at once, see
+     * {@link MotionblindsMulticastManager#sendScene(String[], byte[][], int)}. Curtains without a thing,
+     * or whose gateway token is not known yet, are left out.
+     */
+    public SceneExecution moveTogether(Collection<String> macs, int targetPosition) {
+        List<String> sceneMacs = new ArrayList<>(macs.size());
+        List<byte[]> commands = new ArrayList<>(macs.size());
+        for (String mac : macs) {
+            CurtainMotor motor = getMotor(mac);
+            MotionblindsHandler handler = handlers.get(mac);
+            GatewaySession session = motor != null ? mcm.getSession(motor.getGatewayMac()) : null;
+            String accessToken = handler != null && session != null
+                    ? encoder.accessToken(session, handler.getApiKey())
+                    : null;
+            if (motor == null || handler == null || accessToken == null) {
+                logger.debug("Cannot move {} with the scene, device or gateway token unknown", mac);
+                continue;
+            }
+            sceneMacs.add(mac);
+            commands.add(encoder.writeTargetPosition(motor, accessToken, targetPosition));
         }
+        SceneExecution scene = mcm.sendScene(sceneMacs.toArray(new String[0]), commands.toArray(new byte[0][]), 3);
+        for (String mac : sceneMacs) {
+            refreshScheduler.expedite(mac);
+            MotionblindsHandler handler = handlers.get(mac);
+            if (handler != null) {
+                handler.commanded(targetPosition);
+            }
+        }
+        return scene;
+    }
+
+    public MotionblindsMulticastManager getMulticastManager() {
+        return mcm;
     }
 
-    private void refresh() {
-        mcm.send("{\"\":\"\"}");
+    public RefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
+    public @Nullable CurtainMotor getMotor(String mac) {
+        return mcm.getDeviceRegistry().getMotor(mac);
     }
 
     @Override
@@ -75,14 +199,28 @@ public class MotionBlindsService implements EventSubscriber {
     public void receive(Event event) {
     }
 
+    /**
+     * Applies a changed configuration to the running engine, so the socket and the device registry
+     * survive the change.
+     */
+    @Modified
+    protected void modified(Map<String, Object> properties) {
+        mcm.setExecutionMode(ExecutionMode.parse(properties.get(CONFIG_EXECUTION_MODE)));
+        mcm.getUpdateRing().setPolicy(OverloadPolicy.parse(properties.get(CONFIG_OVERLOAD_POLICY)));
+    }
+
     @Deactivate
     protected void deactivate() {
-        logger.error("DEACTIVATE");
-        mcm.stop();
+        // no new requests, then the engine waits for the running listeners before the last flush
         ScheduledFuture<?> refreshPollingJob = this.refreshPollingJob;
         if (refreshPollingJob != null && !refreshPollingJob.isCancelled()) {
             refreshPollingJob.cancel(true);
             this.refreshPollingJob = null;
         }
+        snapshotJob.cancel(false);
+        mcm.stop();
+        mcm.removeDeviceUpdateListener(deviceListener);
+        snapshot.flush();
+        snapshot.close();
     }
 }
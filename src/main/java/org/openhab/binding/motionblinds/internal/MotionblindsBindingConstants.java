@@ -12,6 +12,8 @@
  */
 package org.openhab.binding.motionblinds.internal;
 
+import java.util.Set;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.openhab.core.thing.ThingTypeUID;
 
@@ -27,8 +29,28 @@ public class MotionblindsBindingConstants {
     private static final String BINDING_ID = "motionblinds";
 
     // List of all Thing Type UIDs
-    public static final ThingTypeUID THING_TYPE_SAMPLE = new ThingTypeUID(BINDING_ID, "sample");
+    public static final ThingTypeUID THING_TYPE_GATEWAY = new ThingTypeUID(BINDING_ID, "gateway");
+    public static final ThingTypeUID THING_TYPE_CURTAIN = new ThingTypeUID(BINDING_ID, "curtain");
+    public static final ThingTypeUID THING_TYPE_ROLLER = new ThingTypeUID(BINDING_ID, "roller");
+    public static final ThingTypeUID THING_TYPE_VENETIAN = new ThingTypeUID(BINDING_ID, "venetian");
+    public static final ThingTypeUID THING_TYPE_TOP_DOWN_BOTTOM_UP = new ThingTypeUID(BINDING_ID, "tdbu");
+
+    public static final Set<ThingTypeUID> MOTOR_THING_TYPES = Set.of(THING_TYPE_CURTAIN, THING_TYPE_ROLLER,
+            THING_TYPE_VENETIAN, THING_TYPE_TOP_DOWN_BOTTOM_UP);
 
     // List of all Channel ids
-    public static final String CHANNEL_1 = "channel1";
+    public static final String CHANNEL_POSITION = "position";
+    public static final String CHANNEL_RSSI = "rssi";
+    public static final String CHANNEL_TILT = "tilt";
+    public static final String CHANNEL_POSITION_TOP = "position-top";
+    public static final String CHANNEL_POSITION_BOTTOM = "position-bottom";
+    public static final String CHANNEL_IP_ADDRESS = "ip-address";
+    public static final String CHANNEL_RECEIVED = "received";
+    public static final String CHANNEL_SENT = "sent";
+    public static final String CHANNEL_QUEUE_DEPTH = "queue-depth";
+    public static final String CHANNEL_DROPPED = "dropped";
+    public static final String CHANNEL_ACK_LATENCY = "ack-latency";
+
+    // List of all configuration parameters
+    public static final String CONFIG_MAC = "mac";
 }
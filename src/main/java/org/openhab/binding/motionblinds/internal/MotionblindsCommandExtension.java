@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.multicast.DeviceUpdateRing;
+import org.openhab.binding.motionblinds.multicast.GatewaySession;
+import org.openhab.binding.motionblinds.multicast.LatencyHistogram;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager;
+import org.openhab.binding.motionblinds.multicast.MulticastMetrics;
+import org.openhab.binding.motionblinds.multicast.PacketCapture;
+import org.openhab.binding.motionblinds.multicast.SceneExecution;
+import org.openhab.binding.motionblinds.multicast.SendQueue;
+import org.openhab.core.io.console.Console;
+import org.openhab.core.io.console.extensions.AbstractConsoleCommandExtension;
+import org.openhab.core.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * The {@link MotionblindsCommandExtension} prints the diagnostics of the multicast engine on the
+ * openHAB console.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = ConsoleCommandExtension.class)
+public class MotionblindsCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String SUBCMD_METRICS = "metrics";
+    private static final String SUBCMD_DEVICES = "devices";
+    private static final String SUBCMD_MOVE = "move";
+    private static final String SUBCMD_CAPTURE = "capture";
+    private static final String CAPTURE_START = "start";
+    private static final String CAPTURE_STOP = "stop";
+    private static final String CAPTURE_DUMP = "dump";
+    private static final long MOVE_WAIT_SECONDS = 6;
+
+    private final MotionBlindsService service;
+
+    @Activate
+    public MotionblindsCommandExtension(@Reference MotionBlindsService service) {
+        super("motionblinds", "Show diagnostics of the Motionblinds binding.");
+        this.service = service;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_METRICS.equals(args[0])) {
+            printMetrics(console);
+        } else if (args.length == 1 && SUBCMD_DEVICES.equals(args[0])) {
+            printDevices(console);
+        } else if (args.length >= 3 && SUBCMD_MOVE.equals(args[0])) {
+            move(console, args);
+        } else if (args.length == 2 && SUBCMD_CAPTURE.equals(args[0])) {
+            capture(console, args[1]);
+        } else {
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return List.of(buildCommandUsage(SUBCMD_METRICS, "show counters, queue depths and latencies"),
+                buildCommandUsage(SUBCMD_DEVICES, "list known devices with their command round trip time"),
+                buildCommandUsage(SUBCMD_MOVE + " <position> <mac> [<mac> ...]",
+                        "move curtains together and show how far apart they started"),
+                buildCommandUsage(SUBCMD_CAPTURE + " <" + CAPTURE_START + "|" + CAPTURE_STOP + "|" + CAPTURE_DUMP + ">",
+                        "record the last datagrams received and sent, and print them"));
+    }
+
+    private void printMetrics(Console console) {
+        MotionblindsMulticastManager mcm = service.getMulticastManager();
+        MulticastMetrics metrics = mcm.getMetrics();
+        SendQueue sendQueue = mcm.getSendQueue();
+        DeviceUpdateRing updateRing = mcm.getUpdateRing();
+        LatencyHistogram roundTrip = metrics.getAckRoundTrip();
+        console.println("Interfaces:            " + mcm.getInterfaceChannels());
+        console.println("Packets received:      " + metrics.getPacketsReceived());
+        console.println("Parse failures:        " + metrics.getParseFailures());
+        console.println("Packets sent:          " + metrics.getPacketsSent());
+        console.println("Retransmits:           " + metrics.getRetransmits() + " sent, "
+                + metrics.getRetransmitsCancelled() + " cancelled by ack");
+        console.println("Restarts:              " + metrics.getRestarts() + ", socket "
+                + mcm.getSupervisor().getState() + ", failures " + mcm.getSupervisor().getFailures());
+        console.println("Execution mode:        " + mcm.getExecutionMode());
+        console.println("Send queue:            " + describe(sendQueue));
+        for (GatewaySession session : mcm.getSessions()) {
+            console.println("  gateway " + session.getMac() + ": " + describe(session.getSendQueue()));
+        }
+        console.println("Update ring:           " + updateRing.size() + "/" + updateRing.getCapacity()
+                + ", high water " + updateRing.getHighWaterMark() + ", overflow " + updateRing.getOverflowSize() + "/"
+                + updateRing.getOverflowCapacity());
+        console.println("Updates:               " + updateRing.getCoalesced() + " coalesced, "
+                + updateRing.getDeferred() + " deferred, " + metrics.getUpdatesDropped() + " dropped ("
+                + updateRing.getHeartbeatsDropped() + " Heartbeats), policy " + updateRing.getPolicy());
+        LatencyHistogram queueWait = metrics.getInteractiveQueueWait();
+        console.println("Command queue wait (ms): n=" + queueWait.getCount() + " p50="
+                + millis(queueWait.getPercentile(50)) + " p99=" + millis(queueWait.getPercentile(99)) + " max="
+                + millis(queueWait.getMax()));
+        console.println("Ack round trip (ms):   n=" + roundTrip.getCount() + " p50="
+                + millis(roundTrip.getPercentile(50)) + " p90=" + millis(roundTrip.getPercentile(90)) + " p99="
+                + millis(roundTrip.getPercentile(99)) + " max=" + millis(roundTrip.getMax()));
+    }
+
+    private static String describe(SendQueue queue) {
+        return queue.size() + "/" + queue.getCapacity() + ", high water " + queue.getHighWaterMark() + ", coalesced "
+                + queue.getCoalesced() + ", rejected " + queue.getRejected() + ", dropped " + queue.getDropped();
+    }
+
+    private void printDevices(Console console) {
+        MotionblindsMulticastManager mcm = service.getMulticastManager();
+        for (CurtainMotor motor : mcm.getDeviceRegistry().getMotors()) {
+            MulticastMetrics.RoundTrip roundTrip = mcm.getMetrics().getRoundTrip(motor.getMac());
+            console.println(motor.getMac() + " type=" + motor.getDeviceType() + " kind=" + motor.getKind()
+                    + " position=" + motor.getCurrentPosition() + " rssi=" + motor.getRssi()
+                    + (roundTrip != null
+                            ? " rtt=" + millis(roundTrip.getLast()) + "ms avg=" + millis(roundTrip.getAverage()) + "ms"
+                            : ""));
+        }
+    }
+
+    private void move(Console console, String[] args) {
+        int position;
+        try {
+            position = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            position = -1;
+        }
+        if (position < 0 || position > 100) {
+            console.println("Position must be between 0 and 100");
+            return;
+        }
+        SceneExecution scene = service.moveTogether(Arrays.asList(args).subList(2, args.length), position);
+        try {
+            scene.getCompletion().get(MOVE_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            // print what is known so far
+        }
+        console.println("Moved " + scene.getAcknowledged() + "/" + scene.size() + " curtains, sent within "
+                + millis(scene.getSendSpread()) + " ms, answered within " + millis(scene.getAckSpread()) + " ms");
+        if (!scene.getMissing().isEmpty()) {
+            console.println("No answer from " + scene.getMissing());
+        }
+    }
+
+    private void capture(Console console, String action) {
+        PacketCapture capture = service.getMulticastManager().getCapture();
+        switch (action) {
+            case CAPTURE_START -> capture.start();
+            case CAPTURE_STOP -> capture.stop();
+            case CAPTURE_DUMP -> {
+                if (!capture.isEnabled()) {
+                    console.println("Capture is not running");
+                }
+                capture.dump().forEach(console::println);
+            }
+            default -> printUsage(console);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
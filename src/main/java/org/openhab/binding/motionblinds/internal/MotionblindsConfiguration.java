@@ -23,7 +23,18 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
 public class MotionblindsConfiguration {
 
     /**
-     * Sample configuration parameters. Replace with your own.
+     * MAC address of the device as reported by the gateway.
+     */
+    public String mac = "";
+
+    /**
+     * Key of the Motion app, needed to control the device.
      */
     public String apiKey = "";
+
+    /**
+     * Interval in milliseconds of the predicted positions published while a curtain moves, 0 to only
+     * publish reported positions.
+     */
+    public int interpolationInterval = 250;
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import static org.openhab.binding.motionblinds.internal.MotionblindsBindingConstants.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.DeviceKind;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+import org.openhab.binding.motionblinds.multicast.DeviceUpdateListener;
+import org.openhab.core.config.discovery.AbstractDiscoveryService;
+import org.openhab.core.config.discovery.DiscoveryResult;
+import org.openhab.core.config.discovery.DiscoveryResultBuilder;
+import org.openhab.core.config.discovery.DiscoveryService;
+import org.openhab.core.thing.ThingTypeUID;
+import org.openhab.core.thing.ThingUID;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link MotionblindsDiscoveryService} builds the inbox from the traffic the binding receives
+ * anyway.
+ * <p>
+ * Background discovery listens to the device registry: a device is reported when it is first seen
+ * and its result is refreshed at most every half {@link #RESULT_TTL_SECONDS}, so results of devices
+ * that vanished expire from the inbox. The first Heartbeat of a gateway triggers one
+ * <code>GetDeviceList</code> to it, which is repeated only when the cached list is as old as a
+ * result refresh. A manual scan multicasts a single <code>GetDeviceList</code> to all gateways.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = DiscoveryService.class, configurationPid = "discovery.motionblinds")
+public class MotionblindsDiscoveryService extends AbstractDiscoveryService {
+    private static final int SCAN_TIMEOUT_SECONDS = 5;
+    private static final long RESULT_TTL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(RESULT_TTL_SECONDS / 2);
+    private static final String PROPERTY_DEVICE_TYPE = "deviceType";
+
+    private final Logger logger = LoggerFactory.getLogger(MotionblindsDiscoveryService.class);
+    private final MotionBlindsService service;
+    private final DeviceUpdateListener listener = this::deviceUpdated;
+    // System.nanoTime() of the last result per device and of the last device list request per gateway
+    private final Map<String, Long> published = new ConcurrentHashMap<>();
+    private final Map<String, Long> deviceListRequested = new ConcurrentHashMap<>();
+    private boolean background;
+    private boolean scanning;
+    private boolean listening;
+
+    @Activate
+    public MotionblindsDiscoveryService(@Reference MotionBlindsService service) {
+        super(Set.of(THING_TYPE_GATEWAY, THING_TYPE_CURTAIN, THING_TYPE_ROLLER, THING_TYPE_VENETIAN,
+                THING_TYPE_TOP_DOWN_BOTTOM_UP), SCAN_TIMEOUT_SECONDS, true);
+        this.service = service;
+    }
+
+    @Override
+    @Activate
+    protected void activate(@Nullable Map<String, Object> configProperties) {
+        super.activate(configProperties);
+    }
+
+    @Override
+    @Deactivate
+    protected void deactivate() {
+        super.deactivate();
+        synchronized (this) {
+            background = false;
+            scanning = false;
+            updateListener();
+        }
+    }
+
+    @Override
+    protected void startBackgroundDiscovery() {
+        synchronized (this) {
+            background = true;
+            updateListener();
+        }
+        // devices known before background discovery started do not send a first message again
+        publishKnownDevices();
+    }
+
+    @Override
+    protected void stopBackgroundDiscovery() {
+        synchronized (this) {
+            background = false;
+            updateListener();
+        }
+    }
+
+    @Override
+    protected void startScan() {
+        synchronized (this) {
+            scanning = true;
+            updateListener();
+        }
+        published.clear();
+        long now = System.nanoTime();
+        for (CurtainMotor motor : service.getMulticastManager().getDeviceRegistry().getMotors()) {
+            if (motor.isGateway()) {
+                deviceListRequested.put(motor.getMac(), now);
+            }
+        }
+        publishKnownDevices();
+        if (!service.requestDeviceList("")) {
+            logger.debug("Could not queue the device list request");
+        }
+    }
+
+    @Override
+    protected synchronized void stopScan() {
+        super.stopScan();
+        scanning = false;
+        updateListener();
+    }
+
+    private synchronized void updateListener() {
+        boolean listen = background || scanning;
+        if (listen != listening) {
+            if (listen) {
+                service.getMulticastManager().addDeviceUpdateListener(listener);
+            } else {
+                service.getMulticastManager().removeDeviceUpdateListener(listener);
+            }
+            listening = listen;
+        }
+    }
+
+    private void publishKnownDevices() {
+        for (CurtainMotor motor : service.getMulticastManager().getDeviceRegistry().getMotors()) {
+            deviceUpdated(motor, MotionblindsMessage.Type.UNKNOWN);
+        }
+    }
+
+    /**
+     * Called for every update of the registry, so it only does map lookups unless a device is new or
+     * its result is due for a refresh.
+     */
+    private void deviceUpdated(CurtainMotor motor, MotionblindsMessage.Type type) {
+        ThingTypeUID thingTypeUID = thingTypeOf(motor.getKind());
+        if (thingTypeUID == null) {
+            // motors tell their kind in the answer to the ReadDevice of the refresh scheduler
+            return;
+        }
+        long now = System.nanoTime();
+        String mac = motor.getMac();
+        if (motor.isGateway() && type == MotionblindsMessage.Type.HEARTBEAT && isDue(deviceListRequested, mac, now)) {
+            deviceListRequested.put(mac, now);
+            logger.debug("Requesting the device list of gateway {}", mac);
+            service.requestDeviceList(mac);
+        }
+        if (isDue(published, mac, now)) {
+            published.put(mac, now);
+            thingDiscovered(createResult(motor, thingTypeUID));
+        }
+    }
+
+    private static boolean isDue(Map<String, Long> times, String mac, long now) {
+        Long last = times.get(mac);
+        return last == null || now - last >= REFRESH_NANOS;
+    }
+
+    private static @Nullable ThingTypeUID thingTypeOf(DeviceKind kind) {
+        return switch (kind) {
+            case GATEWAY -> THING_TYPE_GATEWAY;
+            case ROLLER -> THING_TYPE_ROLLER;
+            case VENETIAN -> THING_TYPE_VENETIAN;
+            case TOP_DOWN_BOTTOM_UP -> THING_TYPE_TOP_DOWN_BOTTOM_UP;
+            case CURTAIN -> THING_TYPE_CURTAIN;
+            case UNKNOWN -> null;
+        };
+    }
+
+    private DiscoveryResult createResult(CurtainMotor motor, ThingTypeUID thingTypeUID) {
+        String mac = motor.getMac();
+        DiscoveryResultBuilder builder;
+        if (motor.isGateway()) {
+            builder = DiscoveryResultBuilder.create(new ThingUID(THING_TYPE_GATEWAY, mac))
+                    .withLabel("Motion Gateway " + mac);
+        } else if (!mac.equals(motor.getGatewayMac())) {
+            ThingUID bridgeUID = new ThingUID(THING_TYPE_GATEWAY, motor.getGatewayMac());
+            builder = DiscoveryResultBuilder.create(new ThingUID(thingTypeUID, bridgeUID, mac))
+                    .withBridge(bridgeUID).withLabel(labelOf(motor.getKind()) + " " + mac);
+        } else {
+            // Wi-Fi motors talk to the binding without a hub
+            builder = DiscoveryResultBuilder.create(new ThingUID(thingTypeUID, mac))
+                    .withLabel(labelOf(motor.getKind()) + " " + mac);
+        }
+        return builder.withProperty(CONFIG_MAC, mac).withProperty(PROPERTY_DEVICE_TYPE, motor.getDeviceType())
+                .withRepresentationProperty(CONFIG_MAC).withTTL(RESULT_TTL_SECONDS).build();
+    }
+
+    private static String labelOf(DeviceKind kind) {
+        return switch (kind) {
+            case VENETIAN -> "Motion Venetian Blind";
+            case TOP_DOWN_BOTTOM_UP -> "Motion Top Down Bottom Up Blind";
+            case CURTAIN -> "Motion Curtain Motor";
+            default -> "Motion Roller Blind";
+        };
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import static org.openhab.binding.motionblinds.internal.MotionblindsBindingConstants.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.multicast.GatewaySession;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager;
+import org.openhab.binding.motionblinds.multicast.MulticastMetrics;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.thing.Bridge;
+import org.openhab.core.thing.ChannelUID;
+import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.openhab.core.thing.binding.BaseBridgeHandler;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.RefreshType;
+
+/**
+ * The {@link MotionblindsGatewayHandler} represents a Motion gateway. The gateway is ONLINE while
+ * its Heartbeats arrive; requests for its devices are then sent unicast to the address the
+ * Heartbeats came from.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsGatewayHandler extends BaseBridgeHandler {
+    private static final int STATUS_INTERVAL_SECONDS = 10;
+    // the gateway sends a Heartbeat about every 30 to 60 seconds
+    private static final long HEARTBEAT_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(3);
+    private static final int SLOT_RECEIVED = 0;
+    private static final int SLOT_SENT = 1;
+    private static final int SLOT_QUEUE = 2;
+    private static final int SLOT_DROPPED = 3;
+    private static final int SLOT_ACK_LATENCY = 4;
+    private static final int ACK_LATENCY_HYSTERESIS_MILLIS = 5;
+
+    private final MotionBlindsService service;
+    private final StateChangeFilter stateFilter = new StateChangeFilter(0, 0, 0, 0, ACK_LATENCY_HYSTERESIS_MILLIS);
+    private MotionblindsConfiguration config = new MotionblindsConfiguration();
+    private @Nullable ScheduledFuture<?> statusJob;
+    private @Nullable InetSocketAddress publishedAddress;
+
+    public MotionblindsGatewayHandler(Bridge bridge, MotionBlindsService service) {
+        super(bridge);
+        this.service = service;
+    }
+
+    @Override
+    public void handleCommand(ChannelUID channelUID, Command command) {
+        if (command instanceof RefreshType) {
+            stateFilter.reset();
+            publishedAddress = null;
+            updateSession();
+        }
+    }
+
+    @Override
+    public void initialize() {
+        config = getConfigAs(MotionblindsConfiguration.class);
+        if (config.mac.isBlank()) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "MAC address is not set");
+            return;
+        }
+        stateFilter.reset();
+        publishedAddress = null;
+        updateStatus(ThingStatus.UNKNOWN);
+        statusJob = scheduler.scheduleWithFixedDelay(this::updateSession, 0, STATUS_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose() {
+        ScheduledFuture<?> statusJob = this.statusJob;
+        if (statusJob != null) {
+            statusJob.cancel(true);
+            this.statusJob = null;
+        }
+    }
+
+    public String getApiKey() {
+        return config.apiKey;
+    }
+
+    private void updateSession() {
+        GatewaySession session = service.getMulticastManager().getSession(config.mac);
+        if (session == null || session.getLastSeen() == 0) {
+            if (thing.getStatus() != ThingStatus.UNKNOWN) {
+                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                        "No Heartbeat received from the gateway");
+            }
+            return;
+        }
+        if (System.nanoTime() - session.getLastSeen() > HEARTBEAT_TIMEOUT_NANOS) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    "No Heartbeat received from the gateway");
+        } else if (thing.getStatus() != ThingStatus.ONLINE) {
+            updateStatus(ThingStatus.ONLINE);
+        }
+        InetSocketAddress address = session.getAddress();
+        if (address != null && !address.equals(publishedAddress)) {
+            publishedAddress = address;
+            updateState(CHANNEL_IP_ADDRESS, new StringType(address.getAddress().getHostAddress()));
+        }
+        long received = session.getReceived();
+        if (stateFilter.changed(SLOT_RECEIVED, received)) {
+            updateState(CHANNEL_RECEIVED, new DecimalType(received));
+        }
+        long sent = session.getSent();
+        if (stateFilter.changed(SLOT_SENT, sent)) {
+            updateState(CHANNEL_SENT, new DecimalType(sent));
+        }
+        int queued = session.getSendQueue().size();
+        if (stateFilter.changed(SLOT_QUEUE, queued)) {
+            updateState(CHANNEL_QUEUE_DEPTH, new DecimalType(queued));
+        }
+        long dropped = session.getSendQueue().getRejected() + session.getSendQueue().getDropped();
+        if (stateFilter.changed(SLOT_DROPPED, dropped)) {
+            updateState(CHANNEL_DROPPED, new DecimalType(dropped));
+        }
+        long ackLatency = averageRoundTripMillis();
+        if (ackLatency >= 0 && stateFilter.changed(SLOT_ACK_LATENCY, ackLatency)) {
+            updateState(CHANNEL_ACK_LATENCY, new DecimalType(ackLatency));
+        }
+    }
+
+    /**
+     * @return the average of the smoothed round trips of the devices behind this gateway in
+     *         milliseconds, -1 if none of them acknowledged a command yet
+     */
+    private long averageRoundTripMillis() {
+        MotionblindsMulticastManager mcm = service.getMulticastManager();
+        long sum = 0;
+        int count = 0;
+        for (CurtainMotor motor : mcm.getDeviceRegistry().getMotorsOfGateway(config.mac)) {
+            MulticastMetrics.RoundTrip roundTrip = mcm.getMetrics().getRoundTrip(motor.getMac());
+            if (roundTrip != null) {
+                sum += roundTrip.getAverage();
+                count++;
+            }
+        }
+        return count == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(sum / count);
+    }
+}
@@ -13,14 +13,29 @@
 package org.openhab.binding.motionblinds.internal;
 
 import static org.openhab.binding.motionblinds.internal.MotionblindsBindingConstants.*;
+import static org.openhab.binding.motionblinds.multicast.MotionblindsCommandEncoder.*;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StopMoveType;
+import org.openhab.core.library.types.UpDownType;
+import org.openhab.core.thing.Bridge;
 import org.openhab.core.thing.ChannelUID;
 import org.openhab.core.thing.Thing;
 import org.openhab.core.thing.ThingStatus;
+import org.openhab.core.thing.ThingStatusDetail;
+import org.openhab.core.thing.ThingStatusInfo;
 import org.openhab.core.thing.binding.BaseThingHandler;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.RefreshType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The {@link MotionblindsHandler} is responsible for handling commands, which are
@@ -30,72 +45,242 @@ import org.openhab.core.types.RefreshType;
  */
 @NonNullByDefault
 public class MotionblindsHandler extends BaseThingHandler {
+    private static final int SLOT_POSITION = 0;
+    private static final int SLOT_RSSI = 1;
+    private static final int SLOT_POSITION_BOTTOM = 2;
+    private static final int SLOT_TILT = 3;
+    private static final int MAX_ANGLE = 180;
+    // RSSI jitters by a few dBm between Heartbeats
+    private static final int RSSI_HYSTERESIS = 3;
 
-    // private final Logger logger = LoggerFactory.getLogger(MotionblindsHandler.class);
-
-    // private @Nullable MotionblindsConfiguration config;
+    private final Logger logger = LoggerFactory.getLogger(MotionblindsHandler.class);
+    private final MotionBlindsService service;
+    private final StateChangeFilter stateFilter = new StateChangeFilter(0, RSSI_HYSTERESIS, 0, 0);
+    private final PositionInterpolator interpolator = new PositionInterpolator();
+    private MotionblindsConfiguration config = new MotionblindsConfiguration();
+    private @Nullable ScheduledFuture<?> interpolationJob;
 
-    public MotionblindsHandler(Thing thing) {
+    public MotionblindsHandler(Thing thing, MotionBlindsService service) {
         super(thing);
+        this.service = service;
     }
 
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
-        if (CHANNEL_1.equals(channelUID.getId())) {
-            if (command instanceof RefreshType) {
-                // TODO: handle data refresh
+        CurtainMotor motor = service.getMotor(config.mac);
+        if (command instanceof RefreshType) {
+            stateFilter.reset();
+            if (motor != null) {
+                publish(motor);
+            }
+            return;
+        }
+        if (motor == null) {
+            return;
+        }
+        switch (channelUID.getId()) {
+            case CHANNEL_POSITION -> {
+                if (move(motor, command, FIELD_TARGET_POSITION, FIELD_OPERATION)) {
+                    commanded(targetOf(command));
+                }
+            }
+            case CHANNEL_POSITION_TOP -> move(motor, command, FIELD_TARGET_POSITION_TOP, FIELD_OPERATION_TOP);
+            case CHANNEL_POSITION_BOTTOM -> move(motor, command, FIELD_TARGET_POSITION_BOTTOM, FIELD_OPERATION_BOTTOM);
+            case CHANNEL_TILT -> {
+                if (command instanceof PercentType percent) {
+                    send(motor, FIELD_TARGET_ANGLE, percent.intValue() * MAX_ANGLE / 100, command);
+                }
+            }
+            default -> {
             }
+        }
+    }
 
-            // TODO: handle command
+    /**
+     * Sends a position or an operation to a motor or to one rail of a top-down/bottom-up blind.
+     *
+     * @return <code>false</code> if the command is not supported or was not sent
+     */
+    private boolean move(CurtainMotor motor, Command command, String positionField, String operationField) {
+        if (command instanceof PercentType percent) {
+            return send(motor, positionField, percent.intValue(), command);
+        } else if (command == UpDownType.UP) {
+            return send(motor, operationField, OPERATION_OPEN, command);
+        } else if (command == UpDownType.DOWN) {
+            return send(motor, operationField, OPERATION_CLOSE, command);
+        } else if (command == StopMoveType.STOP) {
+            return send(motor, operationField, OPERATION_STOP, command);
+        }
+        return false;
+    }
+
+    private boolean send(CurtainMotor motor, String field, int value, Command command) {
+        if (!service.writeDevice(motor, getApiKey(), field, value)) {
+            logger.debug("Command {} for {} not sent", command, config.mac);
+            return false;
+        }
+        return true;
+    }
 
-            // Note: if communication with thing fails for some reason,
-            // indicate that by setting the status with detail information:
-            // updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
-            // "Could not control device at IP address x.x.x.x");
+    /**
+     * @return the position a command moves the curtain to, -1 if it stops it
+     */
+    private static int targetOf(Command command) {
+        if (command instanceof PercentType percent) {
+            return percent.intValue();
+        } else if (command == UpDownType.UP) {
+            return 0;
+        } else if (command == UpDownType.DOWN) {
+            return 100;
         }
+        return -1;
+    }
+
+    /**
+     * Starts predicting the position after a command was sent to the curtain.
+     *
+     * @param target the position the curtain was sent to, -1 if it was stopped
+     */
+    void commanded(int target) {
+        interpolator.commanded(target, System.nanoTime());
+        startInterpolation();
+    }
+
+    /**
+     * @return the key of the thing, or of its gateway if the thing has none
+     */
+    String getApiKey() {
+        if (!config.apiKey.isBlank()) {
+            return config.apiKey;
+        }
+        Bridge bridge = getBridge();
+        if (bridge != null && bridge.getHandler() instanceof MotionblindsGatewayHandler gateway) {
+            return gateway.getApiKey();
+        }
+        return "";
     }
 
     @Override
     public void initialize() {
-        // config = getConfigAs(MotionblindsConfiguration.class);
-
-        // TODO: Initialize the handler.
-        // The framework requires you to return from this method quickly, i.e. any network access must be done in
-        // the background initialization below.
-        // Also, before leaving this method a thing status from one of ONLINE, OFFLINE or UNKNOWN must be set. This
-        // might already be the real thing status in case you can decide it directly.
-        // In case you can not decide the thing status directly (e.g. for long running connection handshake using WAN
-        // access or similar) you should set status UNKNOWN here and then decide the real status asynchronously in the
-        // background.
-
-        // set the thing status to UNKNOWN temporarily and let the background task decide for the real status.
-        // the framework is then able to reuse the resources from the thing handler initialization.
-        // we set this upfront to reliably check status updates in unit tests.
-        updateStatus(ThingStatus.UNKNOWN);
-
-        // Example for background initialization:
-        scheduler.execute(() -> {
-            boolean thingReachable = true; // <background task with long running initialization here>
-            // when done do:
-            if (thingReachable) {
-                updateStatus(ThingStatus.ONLINE);
+        config = getConfigAs(MotionblindsConfiguration.class);
+        if (config.mac.isBlank()) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "MAC address is not set");
+            return;
+        }
+        stateFilter.reset();
+        interpolator.reset();
+        service.registerHandler(config.mac, this);
+        CurtainMotor motor = service.getMotor(config.mac);
+        if (motor != null) {
+            deviceUpdated(motor);
+        } else {
+            // the thing goes ONLINE with the first message of the device
+            updateStatus(ThingStatus.UNKNOWN);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        service.unregisterHandler(config.mac, this);
+        stopInterpolation();
+    }
+
+    @Override
+    public void bridgeStatusChanged(ThingStatusInfo bridgeStatusInfo) {
+        if (bridgeStatusInfo.getStatus() == ThingStatus.OFFLINE) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.BRIDGE_OFFLINE);
+        } else if (bridgeStatusInfo.getStatus() == ThingStatus.ONLINE) {
+            CurtainMotor motor = service.getMotor(config.mac);
+            if (motor != null) {
+                deviceUpdated(motor);
             } else {
-                updateStatus(ThingStatus.OFFLINE);
+                updateStatus(ThingStatus.UNKNOWN);
             }
-        });
-
-        // These logging types should be primarily used by bindings
-        // logger.trace("Example trace message");
-        // logger.debug("Example debug message");
-        // logger.warn("Example warn message");
-        //
-        // Logging to INFO should be avoided normally.
-        // See https://www.openhab.org/docs/developer/guidelines.html#f-logging
-
-        // Note: When initialization can NOT be done set the status with more details for further
-        // analysis. See also class ThingStatusDetail for all available status details.
-        // Add a description to give user information to understand why thing does not work as expected. E.g.
-        // updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
-        // "Can not access device as username and/or password are invalid");
+        }
+    }
+
+    /**
+     * Called by the {@link MotionBlindsService} whenever a message of this device was received.
+     */
+    public void deviceUpdated(CurtainMotor motor) {
+        Bridge bridge = getBridge();
+        if (bridge != null && bridge.getStatus() == ThingStatus.OFFLINE) {
+            return;
+        }
+        if (thing.getStatus() != ThingStatus.ONLINE) {
+            updateStatus(ThingStatus.ONLINE);
+        }
+        if (isTopDownBottomUp()) {
+            publish(motor);
+            return;
+        }
+        interpolator.update(motor.getCurrentPosition(), motor.getTargetPosition(), motor.isMoving(),
+                System.nanoTime());
+        publish(motor);
+        startInterpolation();
+    }
+
+    /**
+     * Publishes predicted positions every {@link MotionblindsConfiguration#interpolationInterval} while
+     * the curtain moves.
+     */
+    private synchronized void startInterpolation() {
+        if (config.interpolationInterval <= 0 || interpolationJob != null || isTopDownBottomUp()
+                || !interpolator.isMoving(System.nanoTime())) {
+            return;
+        }
+        interpolationJob = scheduler.scheduleWithFixedDelay(this::interpolate, config.interpolationInterval,
+                config.interpolationInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopInterpolation() {
+        ScheduledFuture<?> interpolationJob = this.interpolationJob;
+        if (interpolationJob != null) {
+            interpolationJob.cancel(false);
+            this.interpolationJob = null;
+        }
+    }
+
+    private void interpolate() {
+        long now = System.nanoTime();
+        int position = interpolator.predict(now);
+        if (position >= 0 && position <= 100 && stateFilter.changed(SLOT_POSITION, position)) {
+            updateState(CHANNEL_POSITION, new PercentType(position));
+        }
+        if (!interpolator.isMoving(now)) {
+            // the next report confirms the position
+            stopInterpolation();
+        }
+    }
+
+    private void publish(CurtainMotor motor) {
+        long state = motor.getState();
+        if (isTopDownBottomUp()) {
+            publishPercent(CHANNEL_POSITION_TOP, SLOT_POSITION, CurtainMotor.currentPosition(state));
+            publishPercent(CHANNEL_POSITION_BOTTOM, SLOT_POSITION_BOTTOM, CurtainMotor.currentPositionBottom(state));
+        } else {
+            // repeated positions of a moving motor are stale, the prediction is closer
+            int position = interpolator.predict(System.nanoTime());
+            publishPercent(CHANNEL_POSITION, SLOT_POSITION,
+                    position >= 0 ? position : CurtainMotor.currentPosition(state));
+        }
+        int angle = CurtainMotor.currentAngle(state);
+        if (angle >= 0 && THING_TYPE_VENETIAN.equals(thing.getThingTypeUID())) {
+            publishPercent(CHANNEL_TILT, SLOT_TILT, Math.min(angle, MAX_ANGLE) * 100 / MAX_ANGLE);
+        }
+        int rssi = CurtainMotor.rssi(state);
+        if (rssi != 0 && stateFilter.changed(SLOT_RSSI, rssi)) {
+            updateState(CHANNEL_RSSI, new DecimalType(rssi));
+        }
+    }
+
+    private void publishPercent(String channel, int slot, int value) {
+        if (value >= 0 && value <= 100 && stateFilter.changed(slot, value)) {
+            updateState(channel, new PercentType(value));
+        }
+    }
+
+    private boolean isTopDownBottomUp() {
+        return THING_TYPE_TOP_DOWN_BOTTOM_UP.equals(thing.getThingTypeUID());
     }
 }
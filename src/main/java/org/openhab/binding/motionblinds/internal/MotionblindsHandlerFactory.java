@@ -15,15 +15,20 @@ package org.openhab.binding.motionblinds.internal;
 import static org.openhab.binding.motionblinds.internal.MotionblindsBindingConstants.*;
 
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.thing.Bridge;
 import org.openhab.core.thing.Thing;
 import org.openhab.core.thing.ThingTypeUID;
 import org.openhab.core.thing.binding.BaseThingHandlerFactory;
 import org.openhab.core.thing.binding.ThingHandler;
 import org.openhab.core.thing.binding.ThingHandlerFactory;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 
 /**
  * The {@link MotionblindsHandlerFactory} is responsible for creating things and thing
@@ -35,7 +40,15 @@ import org.osgi.service.component.annotations.Component;
 @Component(configurationPid = "binding.motionblinds", service = ThingHandlerFactory.class)
 public class MotionblindsHandlerFactory extends BaseThingHandlerFactory {
 
-    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Set.of(THING_TYPE_SAMPLE);
+    private static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Stream
+            .concat(Stream.of(THING_TYPE_GATEWAY), MOTOR_THING_TYPES.stream()).collect(Collectors.toUnmodifiableSet());
+
+    private final MotionBlindsService service;
+
+    @Activate
+    public MotionblindsHandlerFactory(@Reference MotionBlindsService service) {
+        this.service = service;
+    }
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -46,8 +59,10 @@ public class MotionblindsHandlerFactory extends BaseThingHandlerFactory {
     protected @Nullable ThingHandler createHandler(Thing thing) {
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
-        if (THING_TYPE_SAMPLE.equals(thingTypeUID)) {
-            return new MotionblindsHandler(thing);
+        if (THING_TYPE_GATEWAY.equals(thingTypeUID)) {
+            return new MotionblindsGatewayHandler((Bridge) thing, service);
+        } else if (MOTOR_THING_TYPES.contains(thingTypeUID)) {
+            return new MotionblindsHandler(thing, service);
         }
 
         return null;
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link PositionInterpolator} predicts the position of a moving motor between its reports.
+ * <p>
+ * The travel speed of the motor is learned from the reports received while it moves. The
+ * prediction starts from the last reported position, or from the position a command was sent at,
+ * and stops at the target. A report with a new position replaces the prediction.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class PositionInterpolator {
+    // about 30 seconds for a full travel until the speed of the motor is learned
+    private static final long DEFAULT_NANOS_PER_PERCENT = TimeUnit.MILLISECONDS.toNanos(300);
+    private static final long MIN_NANOS_PER_PERCENT = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long MAX_NANOS_PER_PERCENT = TimeUnit.SECONDS.toNanos(2);
+
+    private long nanosPerPercent = DEFAULT_NANOS_PER_PERCENT;
+    private boolean learned;
+    private int position = -1;
+    private long positionTime;
+    private int target = -1;
+    private boolean moving;
+
+    /**
+     * Applies the state a motor reported. Unchanged positions repeated while the motor moves keep
+     * the prediction running.
+     */
+    public synchronized void update(int currentPosition, int targetPosition, boolean moving, long now) {
+        if (currentPosition < 0) {
+            return;
+        }
+        if (this.moving && moving && position >= 0 && currentPosition != position) {
+            learn((now - positionTime) / Math.abs(currentPosition - position));
+        }
+        if (currentPosition != position || moving != this.moving) {
+            position = currentPosition;
+            positionTime = now;
+        }
+        this.target = targetPosition;
+        this.moving = moving;
+    }
+
+    /**
+     * Starts the prediction when a command moved the motor, before it reports anything.
+     *
+     * @param targetPosition the position the motor was sent to, -1 if it was stopped
+     */
+    public synchronized void commanded(int targetPosition, long now) {
+        if (position < 0) {
+            return;
+        }
+        position = predict(now);
+        positionTime = now;
+        target = targetPosition;
+        moving = targetPosition >= 0 && targetPosition != position;
+    }
+
+    private void learn(long sample) {
+        long clamped = Math.max(MIN_NANOS_PER_PERCENT, Math.min(MAX_NANOS_PER_PERCENT, sample));
+        nanosPerPercent = learned ? nanosPerPercent + (clamped - nanosPerPercent) / 4 : clamped;
+        learned = true;
+    }
+
+    /**
+     * @return the predicted position, the last known position if the motor does not move, -1 if none
+     *         is known
+     */
+    public synchronized int predict(long now) {
+        if (!moving || position < 0 || target < 0) {
+            return position;
+        }
+        long travelled = (now - positionTime) / nanosPerPercent;
+        int step = (int) Math.min(Math.abs(target - position), travelled);
+        return target > position ? position + step : position - step;
+    }
+
+    /**
+     * @return <code>true</code> while the prediction has not reached the target
+     */
+    public synchronized boolean isMoving(long now) {
+        return moving && predict(now) != target;
+    }
+
+    public synchronized void reset() {
+        position = -1;
+        target = -1;
+        moving = false;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.multicast.MotionblindsCommandEncoder;
+import org.openhab.binding.motionblinds.multicast.MotionblindsDeviceRegistry;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager;
+
+/**
+ * The {@link RefreshScheduler} decides which devices need to be asked for their state.
+ * <p>
+ * Devices push Reports and Heartbeats on their own, so a device is only polled with a
+ * <code>ReadDevice</code> request when nothing was heard from it for longer than its deadline.
+ * The deadline of an idle device doubles with every poll up to {@link #MAX_IDLE_INTERVAL} and
+ * falls back to {@link #MIN_IDLE_INTERVAL} when its position changes. A moving device is polled
+ * every {@link #MOVING_INTERVAL} until it reaches its target, but at most {@link #MAX_STALLED_INTERVAL}
+ * after its position last changed, so a motor that got stuck is not polled at the moving rate forever.
+ * <p>
+ * At most {@link #POLLS_PER_TICK} requests are sent per tick, well below the capacity of the lane they
+ * share, so the devices restored or discovered at startup are polled over the following ticks instead of
+ * pushing each other out of the queue. A device only counts as polled once its request was accepted.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class RefreshScheduler {
+    public static final long TICK_MILLIS = 250;
+    static final long MOVING_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+    static final long MIN_IDLE_INTERVAL = TimeUnit.MINUTES.toNanos(2);
+    static final long MAX_IDLE_INTERVAL = TimeUnit.MINUTES.toNanos(30);
+    static final long MAX_STALLED_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    static final int POLLS_PER_TICK = 12;
+
+    private final MotionblindsMulticastManager mcm;
+    private final MotionblindsCommandEncoder encoder;
+    private final Map<String, DeviceRefresh> devices = new ConcurrentHashMap<>();
+
+    public RefreshScheduler(MotionblindsMulticastManager mcm, MotionblindsCommandEncoder encoder) {
+        this.mcm = mcm;
+        this.encoder = encoder;
+    }
+
+    /**
+     * Called every {@link #TICK_MILLIS}, polls the devices whose state is stale.
+     */
+    public void tick() {
+        long now = System.nanoTime();
+        MotionblindsDeviceRegistry registry = mcm.getDeviceRegistry();
+        if (devices.size() > registry.size()) {
+            // motors left the registry
+            devices.keySet().removeIf(mac -> registry.getMotor(mac) == null);
+        }
+        int polls = 0;
+        for (CurtainMotor motor : registry.getMotors()) {
+            if (motor.isGateway()) {
+                // gateways send their Heartbeat on their own
+                continue;
+            }
+            DeviceRefresh refresh = devices.computeIfAbsent(motor.getMac(), k -> new DeviceRefresh());
+            if (refresh.isDue(motor, now) && mcm.sendRequest(motor.getMac(), encoder.readDevice(motor))) {
+                refresh.polled(now);
+                if (++polls >= POLLS_PER_TICK) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Polls the device at the moving rate until it reports that it reached its target, e.g. after a
+     * command was sent to it.
+     */
+    public void expedite(String mac) {
+        devices.computeIfAbsent(mac, k -> new DeviceRefresh()).expedite(System.nanoTime());
+    }
+
+    public void clear() {
+        devices.clear();
+    }
+
+    int size() {
+        return devices.size();
+    }
+
+    private static class DeviceRefresh {
+        long idleInterval = MIN_IDLE_INTERVAL;
+        long lastPoll;
+        long lastSeenUpdate;
+        int lastPosition = -1;
+        long lastPositionChange;
+        long expeditedUntil;
+        boolean moving;
+
+        synchronized boolean isDue(CurtainMotor motor, long now) {
+            long lastUpdate = motor.getLastUpdate();
+            if (lastUpdate != lastSeenUpdate) {
+                lastSeenUpdate = lastUpdate;
+                if (motor.getCurrentPosition() != lastPosition) {
+                    lastPosition = motor.getCurrentPosition();
+                    lastPositionChange = now;
+                    idleInterval = MIN_IDLE_INTERVAL;
+                }
+            }
+            moving = (motor.isMoving() && now - lastPositionChange < MAX_STALLED_INTERVAL)
+                    || now - expeditedUntil < 0;
+            long interval = moving ? MOVING_INTERVAL : idleInterval;
+            long since = lastUpdate == 0 ? lastPoll : Math.max(lastUpdate, lastPoll);
+            return since == 0 || now - since >= interval;
+        }
+
+        synchronized void polled(long now) {
+            lastPoll = now;
+            if (!moving) {
+                idleInterval = Math.min(idleInterval * 2, MAX_IDLE_INTERVAL);
+            }
+        }
+
+        synchronized void expedite(long now) {
+            expeditedUntil = now + MOVING_INTERVAL * 10;
+            idleInterval = MIN_IDLE_INTERVAL;
+        }
+    }
+}
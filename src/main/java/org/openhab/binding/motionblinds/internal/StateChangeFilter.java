@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link StateChangeFilter} remembers the last value published for each channel of a thing
+ * and tells whether a new value is worth publishing.
+ * <p>
+ * Gateways repeat unchanged values in every Heartbeat. Values within the hysteresis of a
+ * channel are suppressed, so only real changes reach the event bus.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class StateChangeFilter {
+    private final int[] hysteresis;
+    private final long[] published;
+    private final boolean[] known;
+
+    /**
+     * @param hysteresis for each channel slot, the largest difference to the last published value
+     *            that is still suppressed, 0 to publish every change
+     */
+    public StateChangeFilter(int... hysteresis) {
+        this.hysteresis = hysteresis.clone();
+        this.published = new long[hysteresis.length];
+        this.known = new boolean[hysteresis.length];
+    }
+
+    /**
+     * @return <code>true</code> if the value differs enough from the last published one, which is then
+     *         replaced by this value
+     */
+    public synchronized boolean changed(int slot, long value) {
+        if (known[slot] && Math.abs(value - published[slot]) <= hysteresis[slot]) {
+            return false;
+        }
+        published[slot] = value;
+        known[slot] = true;
+        return true;
+    }
+
+    /**
+     * Forgets all published values, so the next value of every channel is published.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < known.length; i++) {
+            known[i] = false;
+        }
+    }
+}
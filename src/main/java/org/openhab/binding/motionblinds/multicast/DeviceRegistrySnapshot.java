@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link DeviceRegistrySnapshot} keeps the last known state of every device in a small binary
+ * file, so devices have a state right after a restart instead of waiting for their next Heartbeat.
+ * <p>
+ * Every device has a fixed {@link #RECORD_SIZE} byte record at a fixed slot. Changed devices are
+ * only marked by {@link #changed(CurtainMotor)}; {@link #flush()} writes the records whose content
+ * differs from the file, without rewriting the others.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class DeviceRegistrySnapshot {
+    private static final int MAGIC = 0x4d424c53;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 64;
+    private static final int MAC_LENGTH = 16;
+    private static final int DEVICE_TYPE_LENGTH = 8;
+
+    private final Logger logger = LoggerFactory.getLogger(DeviceRegistrySnapshot.class);
+    private final Path file;
+    private final Set<CurtainMotor> changed = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private byte[] written = new byte[0];
+    // first slot after the last record of the file, empty records before it are not reused
+    private int nextSlot;
+    private @Nullable FileChannel channel;
+
+    public DeviceRegistrySnapshot(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the snapshot into the registry.
+     *
+     * @return the number of restored devices
+     */
+    public synchronized int restore(MotionblindsDeviceRegistry registry) {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        try {
+            byte[] content = Files.readAllBytes(file);
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            if (content.length < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                logger.debug("Ignoring snapshot {} of an unknown format", file);
+                return 0;
+            }
+            int count = (content.length - HEADER_SIZE) / RECORD_SIZE;
+            for (int slot = 0; slot < count; slot++) {
+                buffer.position(HEADER_SIZE + slot * RECORD_SIZE);
+                String mac = readString(buffer, MAC_LENGTH);
+                if (mac.isEmpty()) {
+                    continue;
+                }
+                CurtainMotor motor = registry.getOrCreate(mac);
+                motor.setDeviceType(readString(buffer, DEVICE_TYPE_LENGTH));
+                motor.restore(buffer.getLong(), buffer.getInt());
+                slots.put(mac, slot);
+            }
+            written = Arrays.copyOfRange(content, HEADER_SIZE, HEADER_SIZE + count * RECORD_SIZE);
+            nextSlot = count;
+            return slots.size();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Cannot read snapshot {}: {}", file, e.getLocalizedMessage());
+            slots.clear();
+            written = new byte[0];
+            nextSlot = 0;
+            return 0;
+        }
+    }
+
+    /**
+     * Marks a device whose record is written with the next {@link #flush()}.
+     */
+    public void changed(CurtainMotor motor) {
+        changed.add(motor);
+    }
+
+    /**
+     * Writes the records of the changed devices that differ from the file.
+     */
+    public synchronized void flush() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            FileChannel channel = open();
+            for (CurtainMotor motor : changed) {
+                changed.remove(motor);
+                if (motor.getMac().isEmpty()) {
+                    continue;
+                }
+                Integer slot = slots.get(motor.getMac());
+                if (slot == null) {
+                    slot = nextSlot++;
+                    slots.put(motor.getMac(), slot);
+                }
+                encode(motor);
+                int offset = slot * RECORD_SIZE;
+                if (offset + RECORD_SIZE > written.length) {
+                    written = Arrays.copyOf(written, Math.max(written.length * 2, offset + RECORD_SIZE));
+                } else if (Arrays.equals(record.array(), 0, RECORD_SIZE, written, offset, offset + RECORD_SIZE)) {
+                    continue;
+                }
+                System.arraycopy(record.array(), 0, written, offset, RECORD_SIZE);
+                record.clear();
+                channel.write(record, HEADER_SIZE + (long) offset);
+            }
+        } catch (IOException e) {
+            logger.debug("Cannot write snapshot {}: {}", file, e.getLocalizedMessage());
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        FileChannel channel = this.channel;
+        this.channel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Cannot close snapshot {}: {}", file, e.getLocalizedMessage());
+            }
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        FileChannel channel = this.channel;
+        if (channel == null) {
+            Path parent = file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE || slots.isEmpty()) {
+                channel.truncate(0);
+                if (slots.isEmpty()) {
+                    written = new byte[0];
+                    nextSlot = 0;
+                }
+                channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).clear(), 0);
+            }
+            this.channel = channel;
+        }
+        return channel;
+    }
+
+    private void encode(CurtainMotor motor) {
+        record.clear();
+        writeString(motor.getMac(), MAC_LENGTH);
+        writeString(motor.getDeviceType(), DEVICE_TYPE_LENGTH);
+        record.putLong(motor.getState());
+        record.putInt(motor.getSettings());
+        while (record.hasRemaining()) {
+            record.put((byte) 0);
+        }
+    }
+
+    private void writeString(String value, int length) {
+        for (int i = 0; i < length; i++) {
+            record.put(i < value.length() ? (byte) value.charAt(i) : 0);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        int start = buffer.position();
+        int end = start;
+        while (end < start + length && buffer.get(end) != 0) {
+            end++;
+        }
+        buffer.position(start + length);
+        return new String(buffer.array(), start, end - start, StandardCharsets.US_ASCII);
+    }
+}
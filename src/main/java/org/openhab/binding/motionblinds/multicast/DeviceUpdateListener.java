@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+
+/**
+ * The {@link DeviceUpdateListener} is notified when a gateway message updated a device of the
+ * {@link MotionblindsDeviceRegistry}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+@FunctionalInterface
+public interface DeviceUpdateListener {
+
+    /**
+     * Called outside the multicast event loop. The motor already holds the latest known state, which
+     * may include messages received after the one that triggered this call.
+     */
+    void deviceUpdated(CurtainMotor motor, MotionblindsMessage.Type type);
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+
+/**
+ * The {@link DeviceUpdateRing} hands device updates from the multicast event loop to the thread
+ * notifying the {@link DeviceUpdateListener}s.
+ * <p>
+ * It is a single-producer/single-consumer ring with pre-allocated slots. The event loop is the
+ * only producer and never blocks on it, so a slow listener cannot make the kernel drop datagrams.
+ * A motor takes at most one slot: further updates of a motor that is still waiting are merged into
+ * it, since the listeners read the latest state from the motor anyway. The merged update types are
+ * remembered, so every type is still delivered once. When the ring is full, the
+ * {@link OverloadPolicy} decides whether a Heartbeat is dropped or waits in an overflow queue owned
+ * by the producer. Reports and acks always wait there. The overflow queue holds a motor at most once
+ * and is bounded as well; an update finding it full is dropped. Every case is counted.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class DeviceUpdateRing {
+    private static final MotionblindsMessage.Type[] TYPES = MotionblindsMessage.Type.values();
+    private static final int HEARTBEAT = 1 << MotionblindsMessage.Type.HEARTBEAT.ordinal();
+
+    private final @Nullable CurtainMotor[] motors;
+    private final int mask;
+    private final int overflowCapacity;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final ArrayDeque<CurtainMotor> overflow = new ArrayDeque<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong heartbeatsDropped = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong overflowDropped = new AtomicLong();
+    private volatile OverloadPolicy policy = OverloadPolicy.DROP_HEARTBEATS;
+    // written by the producer only
+    private volatile int highWaterMark;
+    private volatile int overflowSize;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     * @param overflowCapacity number of motors waiting in the overflow queue at most
+     */
+    public DeviceUpdateRing(int capacity, int overflowCapacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        motors = new CurtainMotor[size];
+        mask = size - 1;
+        this.overflowCapacity = overflowCapacity;
+    }
+
+    public void setPolicy(OverloadPolicy policy) {
+        this.policy = policy;
+    }
+
+    public OverloadPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Publishes an update. Must only be called by the producer.
+     *
+     * @return <code>true</code> if the update is waiting for the consumer, <code>false</code> if it
+     *         was dropped
+     */
+    public boolean publish(CurtainMotor motor, MotionblindsMessage.Type type) {
+        int bit = 1 << type.ordinal();
+        if (motor.markUpdatePending(bit) != 0) {
+            coalesced.incrementAndGet();
+            return true;
+        }
+        if (flushOverflow() && offer(motor)) {
+            return true;
+        }
+        if (bit == HEARTBEAT && policy == OverloadPolicy.DROP_HEARTBEATS) {
+            motor.takePendingUpdates();
+            heartbeatsDropped.incrementAndGet();
+            return false;
+        }
+        if (overflow.size() >= overflowCapacity) {
+            motor.takePendingUpdates();
+            overflowDropped.incrementAndGet();
+            return false;
+        }
+        overflow.add(motor);
+        overflowSize = overflow.size();
+        deferred.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Moves deferred updates into the ring. Must only be called by the producer.
+     *
+     * @return <code>true</code> if nothing is left in the overflow queue
+     */
+    public boolean flushOverflow() {
+        CurtainMotor motor;
+        while ((motor = overflow.peek()) != null) {
+            if (!offer(motor)) {
+                return false;
+            }
+            overflow.poll();
+            overflowSize = overflow.size();
+        }
+        return true;
+    }
+
+    private boolean offer(CurtainMotor motor) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        motors[(int) (t & mask)] = motor;
+        tail.lazySet(t + 1);
+        published.incrementAndGet();
+        int size = (int) (t + 1 - head.get());
+        if (size > highWaterMark) {
+            highWaterMark = size;
+        }
+        return true;
+    }
+
+    /**
+     * Passes all waiting updates to the listener. Must only be called by the consumer.
+     *
+     * @return the number of updates passed
+     */
+    public int drain(DeviceUpdateListener listener) {
+        long h = head.get();
+        long t = tail.get();
+        int count = 0;
+        while (h < t) {
+            int slot = (int) (h & mask);
+            CurtainMotor motor = motors[slot];
+            motors[slot] = null;
+            head.lazySet(++h);
+            if (motor != null) {
+                // updates published from here on take a new slot
+                int pending = motor.takePendingUpdates();
+                for (int i = 0; pending != 0; i++, pending >>>= 1) {
+                    if ((pending & 1) != 0) {
+                        listener.deviceUpdated(motor, TYPES[i]);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public int getOverflowSize() {
+        return overflowSize;
+    }
+
+    public int getOverflowCapacity() {
+        return overflowCapacity;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * @return updates merged into an update of the same motor that was still waiting
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getHeartbeatsDropped() {
+        return heartbeatsDropped.get();
+    }
+
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    /**
+     * @return updates dropped because the ring and the overflow queue were full
+     */
+    public long getOverflowDropped() {
+        return overflowDropped.get();
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.Locale;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link ExecutionMode} selects where the {@link MotionblindsMulticastManager} runs the device
+ * update listeners, the only work of the engine that may block.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public enum ExecutionMode {
+    /**
+     * Listeners run on the shared openHAB thread pool.
+     */
+    POOLED,
+    /**
+     * Listeners run on virtual threads, so a blocking listener does not hold a pool thread. Needs a
+     * Java 21 runtime and falls back to {@link #POOLED} on older ones.
+     */
+    VIRTUAL;
+
+    /**
+     * @return the mode named by a configuration value, {@link #POOLED} if it is empty or unknown
+     */
+    public static ExecutionMode parse(@Nullable Object value) {
+        if (value != null) {
+            for (ExecutionMode mode : values()) {
+                if (mode.name().equals(value.toString().trim().toUpperCase(Locale.ROOT))) {
+                    return mode;
+                }
+            }
+        }
+        return POOLED;
+    }
+}
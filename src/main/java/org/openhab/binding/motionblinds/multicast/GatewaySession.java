@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link GatewaySession} holds what the binding knows about one gateway: the address learned
+ * from its Heartbeat, its current token with the AccessToken derived from it and the queue of
+ * requests addressed to it.
+ * <p>
+ * Requests for the devices of a gateway with a known address are sent unicast from its own queue,
+ * so a busy gateway does not delay the others.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class GatewaySession {
+    private static final int INTERACTIVE_CAPACITY = 50;
+    private static final int BACKGROUND_CAPACITY = 50;
+
+    private final String mac;
+    private final int targetPort;
+    private final SendQueue sendQueue = new SendQueue(INTERACTIVE_CAPACITY, BACKGROUND_CAPACITY);
+    private volatile @Nullable InetSocketAddress address;
+    private volatile String token = "";
+    private volatile long lastSeen;
+    private volatile @Nullable InterfaceChannel via;
+    final LongAdder received = new LongAdder();
+    final LongAdder sent = new LongAdder();
+    // cached by the MotionblindsCommandEncoder
+    @Nullable
+    String accessToken;
+    @Nullable
+    String accessTokenSource;
+    @Nullable
+    String accessTokenKey;
+
+    public GatewaySession(String mac, int targetPort) {
+        this.mac = mac;
+        this.targetPort = targetPort;
+    }
+
+    /**
+     * Updates the session from a message the gateway sent. Only allocates when the gateway address
+     * changed.
+     */
+    void seen(InetAddress source, String token, @Nullable InterfaceChannel via, long now) {
+        InetSocketAddress address = this.address;
+        if (address == null || !address.getAddress().equals(source)) {
+            this.address = new InetSocketAddress(source, targetPort);
+        }
+        if (!token.isEmpty() && !token.equals(this.token)) {
+            this.token = token;
+        }
+        this.via = via;
+        lastSeen = now;
+    }
+
+    public String getMac() {
+        return mac;
+    }
+
+    public @Nullable InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the interface the gateway was last seen on, <code>null</code> if it is not in the subnet
+     *         of any interface
+     */
+    public @Nullable InterfaceChannel getVia() {
+        return via;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the last message of the gateway, 0 if none was received
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public SendQueue getSendQueue() {
+        return sendQueue;
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link InterfaceChannel} is the channel of one IPv4 network interface.
+ * <p>
+ * It is bound to the address of the interface, so multicast requests leave through this interface
+ * and unicast requests to the gateways seen on it carry its address as source. The membership of
+ * the group channel on this interface is dropped together with the channel when the interface
+ * goes down.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class InterfaceChannel {
+    private final NetworkInterface networkInterface;
+    private final Inet4Address address;
+    private final int prefixLength;
+    private final String key;
+    private @Nullable DatagramChannel channel;
+    private @Nullable MembershipKey membership;
+
+    InterfaceChannel(NetworkInterface networkInterface, Inet4Address address, int prefixLength) {
+        this.networkInterface = networkInterface;
+        this.address = address;
+        this.prefixLength = prefixLength;
+        this.key = networkInterface.getName() + "/" + address.getHostAddress();
+    }
+
+    /**
+     * Opens the channel and joins the group on this interface with the shared group channel.
+     */
+    void open(Selector selector, DatagramChannel groupChannel, InetAddress group, int bindPort) throws IOException {
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(address, bindPort));
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 5);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, false);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, this);
+            membership = groupChannel.join(group, networkInterface);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+    }
+
+    void close() {
+        MembershipKey membership = this.membership;
+        this.membership = null;
+        if (membership != null) {
+            membership.drop();
+        }
+        DatagramChannel channel = this.channel;
+        this.channel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the address is in the subnet of this interface
+     */
+    boolean contains(InetAddress other) {
+        if (!(other instanceof Inet4Address) || prefixLength <= 0 || prefixLength > 32) {
+            return false;
+        }
+        int mask = -1 << (32 - prefixLength);
+        return (toInt(address) & mask) == (toInt(other) & mask);
+    }
+
+    private static int toInt(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+    }
+
+    @Nullable
+    DatagramChannel getChannel() {
+        return channel;
+    }
+
+    public boolean isOpen() {
+        DatagramChannel channel = this.channel;
+        return channel != null && channel.isOpen();
+    }
+
+    public String getName() {
+        return networkInterface.getName();
+    }
+
+    public Inet4Address getAddress() {
+        return address;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
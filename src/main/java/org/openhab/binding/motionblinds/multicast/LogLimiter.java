@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link LogLimiter} lets one message per key and interval through, so a device or gateway in
+ * trouble cannot flood the log. The number of suppressed messages is reported with the next one
+ * that is let through.
+ * <p>
+ * Keys are compared with {@link Object#equals}, so callers can pass the MAC or address they already
+ * hold and only format it once a message is let through.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class LogLimiter {
+    // a misbehaving network can produce any number of keys, forget them all rather than grow
+    private static final int MAX_KEYS = 256;
+
+    private final long intervalNanos;
+    private final Map<Object, Window> windows = new ConcurrentHashMap<>();
+
+    public LogLimiter(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * @return -1 if the message must be suppressed, otherwise the number of messages suppressed
+     *         since the last one of this key
+     */
+    public long acquire(Object key, long now) {
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= MAX_KEYS) {
+                windows.clear();
+            }
+            window = windows.computeIfAbsent(key, k -> new Window(now - intervalNanos));
+        }
+        return window.acquire(now, intervalNanos);
+    }
+
+    private static class Window {
+        private long lastLogged;
+        private long suppressed;
+
+        Window(long lastLogged) {
+            this.lastLogged = lastLogged;
+        }
+
+        synchronized long acquire(long now, long intervalNanos) {
+            if (now - lastLogged < intervalNanos) {
+                suppressed++;
+                return -1;
+            }
+            long count = suppressed;
+            lastLogged = now;
+            suppressed = 0;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+
+/**
+ * The {@link MotionblindsCommandEncoder} serializes the requests sent to gateways.
+ * <p>
+ * <code>WriteDevice</code> requests carry an AccessToken, the AES encrypted token of the gateway's
+ * Heartbeat with the key of the Motion app as key. It is cached in the {@link GatewaySession} and
+ * only derived again when the gateway rotates its token. The cipher is created once per encoder and
+ * requests are written into a scratch buffer, so encoding a command only allocates the returned
+ * array.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsCommandEncoder {
+    public static final int OPERATION_CLOSE = 0;
+    public static final int OPERATION_OPEN = 1;
+    public static final int OPERATION_STOP = 2;
+
+    public static final String FIELD_OPERATION = "operation";
+    public static final String FIELD_TARGET_POSITION = "targetPosition";
+    public static final String FIELD_TARGET_ANGLE = "targetAngle";
+    // rails of top-down/bottom-up blinds
+    public static final String FIELD_OPERATION_TOP = "operation_T";
+    public static final String FIELD_OPERATION_BOTTOM = "operation_B";
+    public static final String FIELD_TARGET_POSITION_TOP = "targetPosition_T";
+    public static final String FIELD_TARGET_POSITION_BOTTOM = "targetPosition_B";
+
+    private static final int KEY_LENGTH = 16;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final Cipher cipher;
+    private byte[] buffer = new byte[256];
+    private int length;
+    private @Nullable String cipherKey;
+
+    public MotionblindsCommandEncoder() {
+        try {
+            cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES is not available", e);
+        }
+    }
+
+    /**
+     * @return the AccessToken for the current token of the gateway, <code>null</code> if no token was
+     *         received yet or the key does not have 16 characters
+     */
+    public synchronized @Nullable String accessToken(GatewaySession session, String key) {
+        String token = session.getToken();
+        if (token.isEmpty() || key.length() != KEY_LENGTH) {
+            return null;
+        }
+        String accessToken = session.accessToken;
+        if (accessToken != null && token.equals(session.accessTokenSource) && key.equals(session.accessTokenKey)) {
+            return accessToken;
+        }
+        try {
+            if (!key.equals(cipherKey)) {
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "AES"));
+                cipherKey = key;
+            }
+            byte[] encrypted = cipher.doFinal(token.getBytes(StandardCharsets.UTF_8));
+            byte[] hex = new byte[encrypted.length * 2];
+            for (int i = 0; i < encrypted.length; i++) {
+                hex[2 * i] = HEX[(encrypted[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[encrypted[i] & 0xf];
+            }
+            accessToken = new String(hex, StandardCharsets.US_ASCII);
+        } catch (GeneralSecurityException e) {
+            // NoPadding rejects tokens that are not a multiple of the block size
+            cipherKey = null;
+            return null;
+        }
+        session.accessToken = accessToken;
+        session.accessTokenSource = token;
+        session.accessTokenKey = key;
+        return accessToken;
+    }
+
+    /**
+     * Encodes a <code>WriteDevice</code> request setting the operation of a motor, see
+     * {@link #OPERATION_OPEN}, {@link #OPERATION_CLOSE} and {@link #OPERATION_STOP}.
+     */
+    public synchronized byte[] writeOperation(CurtainMotor motor, String accessToken, int operation) {
+        return writeDevice(motor, accessToken, FIELD_OPERATION, operation);
+    }
+
+    /**
+     * Encodes a <code>WriteDevice</code> request moving a motor to a position between 0 and 100.
+     */
+    public synchronized byte[] writeTargetPosition(CurtainMotor motor, String accessToken, int position) {
+        return writeDevice(motor, accessToken, FIELD_TARGET_POSITION, position);
+    }
+
+    public synchronized byte[] readDevice(CurtainMotor motor) {
+        header("ReadDevice", motor);
+        append("\"}");
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Encodes a <code>GetDeviceList</code> request, answered by gateways with the MACs and types of
+     * their devices.
+     */
+    public synchronized byte[] getDeviceList() {
+        length = 0;
+        append("{\"msgType\":\"GetDeviceList\",\"msgID\":\"");
+        appendMsgId(LocalDateTime.now());
+        append("\"}");
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Encodes a <code>WriteDevice</code> request setting a single field, such as
+     * {@link #FIELD_TARGET_ANGLE} or {@link #FIELD_TARGET_POSITION_BOTTOM}.
+     */
+    public synchronized byte[] writeDevice(CurtainMotor motor, String accessToken, String field, int value) {
+        header("WriteDevice", motor);
+        append("\",\"AccessToken\":\"");
+        append(accessToken);
+        append("\",\"data\":{\"");
+        append(field);
+        append("\":");
+        append(value);
+        append("}}");
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void header(String msgType, CurtainMotor motor) {
+        length = 0;
+        append("{\"msgType\":\"");
+        append(msgType);
+        append("\",\"mac\":\"");
+        append(motor.getMac());
+        append("\",\"deviceType\":\"");
+        append(motor.getDeviceType());
+        append("\",\"msgID\":\"");
+        appendMsgId(LocalDateTime.now());
+    }
+
+    /**
+     * Appends the time as <code>yyyyMMddHHmmssSSS</code>.
+     */
+    private void appendMsgId(LocalDateTime now) {
+        appendDigits(now.getYear(), 4);
+        appendDigits(now.getMonthValue(), 2);
+        appendDigits(now.getDayOfMonth(), 2);
+        appendDigits(now.getHour(), 2);
+        appendDigits(now.getMinute(), 2);
+        appendDigits(now.getSecond(), 2);
+        appendDigits(now.getNano() / 1_000_000, 3);
+    }
+
+    private void appendDigits(int value, int digits) {
+        ensureCapacity(digits);
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[length + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void append(int value) {
+        if (value < 0) {
+            append("-");
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        appendDigits(value, digits);
+    }
+
+    private void append(String str) {
+        // MACs, device types, tokens and field names are plain ASCII
+        ensureCapacity(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            buffer[length++] = (byte) str.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+
+/**
+ * The {@link MotionblindsDeviceRegistry} keeps one {@link CurtainMotor} per MAC address
+ * and indexes them by the gateway they are connected to.
+ * <p>
+ * Motors are created once, on the first message seen for their MAC, and updated in place
+ * afterwards. Lookups by MAC or by gateway do not allocate.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsDeviceRegistry {
+    private static final int GATEWAY_MAC_LENGTH = 12;
+
+    private final Map<String, CurtainMotor> motors = new ConcurrentHashMap<>();
+    private final Map<String, GatewayEntry> gateways = new ConcurrentHashMap<>();
+    private final Collection<CurtainMotor> motorsView = Collections.unmodifiableCollection(motors.values());
+
+    public @Nullable CurtainMotor getMotor(String mac) {
+        return motors.get(mac);
+    }
+
+    /**
+     * Returns the motor registered for the given MAC, registering a new one if this MAC
+     * has not been seen yet.
+     */
+    public CurtainMotor getOrCreate(String mac) {
+        CurtainMotor motor = motors.get(mac);
+        if (motor != null) {
+            return motor;
+        }
+        return motors.computeIfAbsent(mac, this::register);
+    }
+
+    public Collection<CurtainMotor> getMotors() {
+        return motorsView;
+    }
+
+    public Collection<CurtainMotor> getMotorsOfGateway(String gatewayMac) {
+        GatewayEntry entry = gateways.get(gatewayMac);
+        return entry != null ? entry.view : Set.of();
+    }
+
+    public int size() {
+        return motors.size();
+    }
+
+    public void clear() {
+        motors.clear();
+        gateways.clear();
+    }
+
+    private CurtainMotor register(String mac) {
+        CurtainMotor motor = new CurtainMotor();
+        motor.setMac(mac);
+        motor.setGatewayMac(gatewayMacOf(mac));
+        gateways.computeIfAbsent(motor.getGatewayMac(), k -> new GatewayEntry()).motors.add(motor);
+        return motor;
+    }
+
+    /**
+     * Devices behind a hub carry the hub MAC followed by a four digit index, Wi-Fi motors
+     * are their own gateway.
+     */
+    static String gatewayMacOf(String mac) {
+        return mac.length() > GATEWAY_MAC_LENGTH ? mac.substring(0, GATEWAY_MAC_LENGTH) : mac;
+    }
+
+    private static class GatewayEntry {
+        final Set<CurtainMotor> motors = ConcurrentHashMap.newKeySet();
+        final Collection<CurtainMotor> view = Collections.unmodifiableSet(motors);
+    }
+}
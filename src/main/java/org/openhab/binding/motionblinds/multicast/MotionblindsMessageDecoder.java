@@ -0,0 +1,380 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+
+/**
+ * The {@link MotionblindsMessageDecoder} is a streaming decoder for the JSON messages sent by
+ * Motion gateways.
+ * <p>
+ * It reads the UTF-8 bytes of a datagram directly into a reused {@link MotionblindsMessage}
+ * without building an intermediate String or Gson tree. Strings such as MAC addresses, device
+ * types and tokens repeat in every message and are served from a small cache, so decoding a
+ * known device does not allocate. Instances are not thread safe.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsMessageDecoder {
+    private static final byte[] MSG_TYPE = ascii("msgType");
+    private static final byte[] MAC = ascii("mac");
+    private static final byte[] DEVICE_TYPE = ascii("deviceType");
+    private static final byte[] TOKEN = ascii("token");
+    private static final byte[] DATA = ascii("data");
+
+    private static final byte[] HEARTBEAT = ascii("Heartbeat");
+    private static final byte[] REPORT = ascii("Report");
+    private static final byte[] WRITE_DEVICE_ACK = ascii("WriteDeviceAck");
+    private static final byte[] READ_DEVICE_ACK = ascii("ReadDeviceAck");
+    private static final byte[] GET_DEVICE_LIST_ACK = ascii("GetDeviceListAck");
+
+    private static final byte[][] DATA_KEYS = { ascii("controlMode"), ascii("RSSI"), ascii("currentPosition"),
+            ascii("targetPosition"), ascii("currentState"), ascii("operation"), ascii("switchMode"),
+            ascii("direction"), ascii("type"), ascii("currentAngle"), ascii("currentPosition_T"),
+            ascii("targetPosition_T"), ascii("currentPosition_B"), ascii("targetPosition_B") };
+    // the top rail of a top-down/bottom-up blind is stored as its position
+    private static final int[] DATA_FIELDS = { MotionblindsMessage.CONTROL_MODE, MotionblindsMessage.RSSI,
+            MotionblindsMessage.CURRENT_POSITION, MotionblindsMessage.TARGET_POSITION,
+            MotionblindsMessage.CURRENT_STATE, MotionblindsMessage.OPERATION, MotionblindsMessage.SWITCH_MODE,
+            MotionblindsMessage.DIRECTION, MotionblindsMessage.BLIND_TYPE, MotionblindsMessage.CURRENT_ANGLE,
+            MotionblindsMessage.CURRENT_POSITION, MotionblindsMessage.TARGET_POSITION,
+            MotionblindsMessage.CURRENT_POSITION_BOTTOM, MotionblindsMessage.TARGET_POSITION_BOTTOM };
+
+    private static final int STRING_CACHE_SIZE = 1024;
+    private static final MalformedMessageException MALFORMED = new MalformedMessageException();
+
+    private final @Nullable String[] stringCache = new String[STRING_CACHE_SIZE];
+    private ByteBuffer buf = ByteBuffer.allocate(0);
+    private int pos;
+    private int limit;
+    private int spanStart;
+    private int spanLength;
+    private @Nullable String entryMac;
+    private @Nullable String entryDeviceType;
+
+    /**
+     * Decodes the bytes between the position and the limit of the buffer. The buffer position is
+     * not modified.
+     *
+     * @return <code>false</code> if the bytes are not a well-formed message object
+     */
+    public boolean decode(ByteBuffer buffer, MotionblindsMessage message) {
+        message.reset();
+        buf = buffer;
+        pos = buffer.position();
+        limit = buffer.limit();
+        try {
+            readObject(message, 0);
+            return true;
+        } catch (MalformedMessageException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads an object. Depth 0 is the message itself, depth 1 its <code>data</code> object and
+     * depth 2 an entry of the <code>GetDeviceListAck</code> device list.
+     */
+    private void readObject(MotionblindsMessage message, int depth) throws MalformedMessageException {
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            readString();
+            int keyStart = spanStart;
+            int keyLength = spanLength;
+            expect(':');
+            if (depth == 0) {
+                readMessageValue(message, keyStart, keyLength);
+            } else if (depth == 1) {
+                readDataValue(message, keyStart, keyLength);
+            } else {
+                readDeviceEntryValue(keyStart, keyLength);
+            }
+            byte b = next();
+            if (b == '}') {
+                return;
+            } else if (b != ',') {
+                throw MALFORMED;
+            }
+        }
+    }
+
+    private void readMessageValue(MotionblindsMessage message, int keyStart, int keyLength)
+            throws MalformedMessageException {
+        if (matches(keyStart, keyLength, MSG_TYPE)) {
+            readString();
+            message.setType(messageType());
+        } else if (matches(keyStart, keyLength, MAC)) {
+            readString();
+            message.setMac(cachedString());
+        } else if (matches(keyStart, keyLength, DEVICE_TYPE)) {
+            readString();
+            message.setDeviceType(cachedString());
+        } else if (matches(keyStart, keyLength, TOKEN)) {
+            readString();
+            message.setToken(cachedString());
+        } else if (matches(keyStart, keyLength, DATA) && peek() == '{') {
+            readObject(message, 1);
+        } else if (matches(keyStart, keyLength, DATA) && peek() == '[') {
+            readDeviceList(message);
+        } else {
+            skipValue();
+        }
+    }
+
+    private void readDataValue(MotionblindsMessage message, int keyStart, int keyLength)
+            throws MalformedMessageException {
+        for (int i = 0; i < DATA_KEYS.length; i++) {
+            if (matches(keyStart, keyLength, DATA_KEYS[i])) {
+                if (isNumberStart(peek())) {
+                    message.set(DATA_FIELDS[i], readInt());
+                    return;
+                }
+                break;
+            }
+        }
+        skipValue();
+    }
+
+    private void readDeviceList(MotionblindsMessage message) throws MalformedMessageException {
+        expect('[');
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        while (true) {
+            entryMac = null;
+            entryDeviceType = null;
+            readObject(message, 2);
+            String mac = entryMac;
+            String deviceType = entryDeviceType;
+            if (mac != null) {
+                message.addDevice(mac, deviceType != null ? deviceType : "");
+            }
+            byte b = next();
+            if (b == ']') {
+                return;
+            } else if (b != ',') {
+                throw MALFORMED;
+            }
+        }
+    }
+
+    private void readDeviceEntryValue(int keyStart, int keyLength) throws MalformedMessageException {
+        if (matches(keyStart, keyLength, MAC)) {
+            readString();
+            entryMac = cachedString();
+        } else if (matches(keyStart, keyLength, DEVICE_TYPE)) {
+            readString();
+            entryDeviceType = cachedString();
+        } else {
+            skipValue();
+        }
+    }
+
+    private MotionblindsMessage.Type messageType() {
+        if (matches(spanStart, spanLength, HEARTBEAT)) {
+            return MotionblindsMessage.Type.HEARTBEAT;
+        } else if (matches(spanStart, spanLength, REPORT)) {
+            return MotionblindsMessage.Type.REPORT;
+        } else if (matches(spanStart, spanLength, WRITE_DEVICE_ACK)) {
+            return MotionblindsMessage.Type.WRITE_DEVICE_ACK;
+        } else if (matches(spanStart, spanLength, READ_DEVICE_ACK)) {
+            return MotionblindsMessage.Type.READ_DEVICE_ACK;
+        } else if (matches(spanStart, spanLength, GET_DEVICE_LIST_ACK)) {
+            return MotionblindsMessage.Type.GET_DEVICE_LIST_ACK;
+        }
+        return MotionblindsMessage.Type.UNKNOWN;
+    }
+
+    /**
+     * Reads a string and remembers its raw content in {@link #spanStart} and {@link #spanLength}.
+     * Escape sequences are skipped but not resolved, the gateway only sends plain ASCII values.
+     */
+    private void readString() throws MalformedMessageException {
+        expect('"');
+        int start = pos;
+        while (pos < limit) {
+            byte b = buf.get(pos++);
+            if (b == '\\') {
+                pos++;
+            } else if (b == '"') {
+                spanStart = start;
+                spanLength = pos - 1 - start;
+                return;
+            }
+        }
+        throw MALFORMED;
+    }
+
+    /**
+     * Reads a number as int. A fraction or exponent is skipped.
+     */
+    private int readInt() throws MalformedMessageException {
+        skipWhitespace();
+        boolean negative = false;
+        if (pos < limit && buf.get(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        int value = 0;
+        int digits = 0;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            pos++;
+        }
+        if (digits == 0) {
+            throw MALFORMED;
+        }
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if ((b < '0' || b > '9') && b != '.' && b != 'e' && b != 'E' && b != '+' && b != '-') {
+                break;
+            }
+            pos++;
+        }
+        return negative ? -value : value;
+    }
+
+    private void skipValue() throws MalformedMessageException {
+        byte b = peek();
+        if (b == '"') {
+            readString();
+        } else if (b == '{' || b == '[') {
+            skipContainer();
+        } else {
+            while (pos < limit) {
+                b = buf.get(pos);
+                if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                    return;
+                }
+                pos++;
+            }
+        }
+    }
+
+    private void skipContainer() throws MalformedMessageException {
+        int level = 0;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == '"') {
+                readString();
+                continue;
+            }
+            pos++;
+            if (b == '{' || b == '[') {
+                level++;
+            } else if (b == '}' || b == ']') {
+                if (--level == 0) {
+                    return;
+                }
+            }
+        }
+        throw MALFORMED;
+    }
+
+    private String cachedString() {
+        int hash = 0;
+        for (int i = 0; i < spanLength; i++) {
+            hash = 31 * hash + buf.get(spanStart + i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+        String cached = stringCache[slot];
+        if (cached != null && cached.length() == spanLength && cached.hashCode() == hash) {
+            boolean equal = true;
+            for (int i = 0; i < spanLength && equal; i++) {
+                equal = cached.charAt(i) == buf.get(spanStart + i);
+            }
+            if (equal) {
+                return cached;
+            }
+        }
+        byte[] bytes = new byte[spanLength];
+        buf.get(spanStart, bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        stringCache[slot] = value;
+        return value;
+    }
+
+    private boolean matches(int start, int length, byte[] literal) {
+        if (length != literal.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf.get(start + i) != literal[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expect(char c) throws MalformedMessageException {
+        if (next() != c) {
+            throw MALFORMED;
+        }
+    }
+
+    private byte next() throws MalformedMessageException {
+        byte b = peek();
+        pos++;
+        return b;
+    }
+
+    private byte peek() throws MalformedMessageException {
+        skipWhitespace();
+        if (pos >= limit) {
+            throw MALFORMED;
+        }
+        return buf.get(pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit && isWhitespace(buf.get(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isNumberStart(byte b) {
+        return b == '-' || (b >= '0' && b <= '9');
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static class MalformedMessageException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        MalformedMessageException() {
+            super("Malformed gateway message", null, false, false);
+        }
+    }
+}
@@ -12,221 +12,903 @@
  */
 package org.openhab.binding.motionblinds.multicast;
 
-import java.net.DatagramPacket;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.InterfaceAddress;
-import java.net.MulticastSocket;
 import java.net.NetworkInterface;
+import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.StandardProtocolFamily;
 import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+import org.openhab.core.common.NamedThreadFactory;
 import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.net.NetworkAddressService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
 /**
  * The {@link MotionblindsMulticastManager} is responsible for multicast service
  * handlers.
+ * <p>
+ * Multicast receive, unicast gateway replies and transmit are all served by non-blocking
+ * {@link DatagramChannel}s and a {@link Selector} running on a single dedicated thread, so
+ * the binding does not hold threads of the shared pools. One channel joins the group on every
+ * IPv4 interface, and every interface has an {@link InterfaceChannel} that sends multicast
+ * out of it and talks to the gateways seen on it.
  *
  * @author Petr Shatsillo - Initial contribution
  */
 @NonNullByDefault
 public class MotionblindsMulticastManager {
     private final Logger logger = LoggerFactory.getLogger(MotionblindsMulticastManager.class);
-    private static final int targetPort = 32100;
-    private BlockingQueue<String> receiveQueue = new LinkedBlockingQueue<>(100);
-    private BlockingQueue<Pack> sendQueue = new LinkedBlockingQueue<>(50);
-    private static final String multicastGroup = "238.0.0.18";
-    private static final int bindPort = 32101;
-    // @Nullable
-    // private InetAddress broadcastAddress;
-    private ArrayList<Future<?>> tasks = new ArrayList<>();
-    @Nullable
-    private ExecutorService threadBool;
-    private boolean isStart = false;
-    private final Object monitor = new Object();
-    @Nullable
-    private MulticastSocket multicastSocket;
-    CurtainMotor curtainMotor = new CurtainMotor();
-    public static List<NetworkInterface> interfacesAddresses = new ArrayList<>();
+    public static final int DEFAULT_TARGET_PORT = 32100;
+    private static final long RETRANSMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    // interfaces come and go with VLANs, a DHCP renew can move an address without closing the socket
+    private static final long INTERFACE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // gateway datagrams are a few hundred bytes, a device list of a full hub stays well below this
+    private static final int BUFFER_SIZE = 8192;
+    private static final int UPDATE_RING_CAPACITY = 256;
+    private static final int UPDATE_OVERFLOW_CAPACITY = 1024;
+    private static final long OVERFLOW_RETRY_MILLIS = 10;
+    // all copies of a scene command are sent within this time
+    private static final long SCENE_TIMEOUT_SECONDS = 5;
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // passes in which the socket filled up before the background lane was reached
+    private static final int STARVATION_LIMIT = 4;
+    // a stop waits this long for the event loop and the running listeners, so redeploying stays below a second
+    private static final long STOP_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(750);
+    private final SendQueue sendQueue = new SendQueue(50, 50);
+    private int starvedPasses;
+    public static final String DEFAULT_MULTICAST_GROUP = "238.0.0.18";
+    public static final int DEFAULT_BIND_PORT = 32101;
+    private final String multicastGroup;
+    private final int bindPort;
+    private volatile int localPort = -1;
+    private @Nullable Selector selector;
+    private @Nullable DatagramChannel channel;
+    private @Nullable Thread eventLoop;
+    private final MotionblindsDeviceRegistry deviceRegistry = new MotionblindsDeviceRegistry();
+    private volatile List<NetworkInterface> interfacesAddresses = List.of();
+    private final SocketSupervisor supervisor = new SocketSupervisor();
+    private final Map<String, InterfaceChannel> interfaceChannels = new HashMap<>();
+    private volatile InterfaceChannel[] interfaceArray = new InterfaceChannel[0];
+    private long nextInterfaceCheck;
+    private @Nullable DatagramChannel blockedChannel;
     private final NetworkAddressService networkAddressService;
-    private boolean stop = false;
-    private @Nullable ScheduledFuture<?> multicastStartJob;
-    private @Nullable ScheduledFuture<?> multicastSendJob;
-    private @Nullable ScheduledFuture<?> multicastReceiveJob;
-    private @Nullable ScheduledFuture<?> multicastConsumJob;
-    protected final ScheduledExecutorService scheduler = ThreadPoolManager
+    private volatile boolean stop = false;
+    private final InetSocketAddress targetAddress;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final MulticastMetrics metrics = new MulticastMetrics();
+    private final RetransmitScheduler retransmits = new RetransmitScheduler(System.nanoTime(), metrics);
+    private final ArrayDeque<Pack> duePacks = new ArrayDeque<>();
+    private final MotionblindsMessageDecoder decoder = new MotionblindsMessageDecoder();
+    private final MotionblindsMessage message = new MotionblindsMessage();
+    private final Consumer<SelectionKey> selectedKeyHandler = this::handleSelectedKey;
+    private final DeviceUpdateRing updateRing = new DeviceUpdateRing(UPDATE_RING_CAPACITY,
+            UPDATE_OVERFLOW_CAPACITY);
+    // set while a dispatch is queued or running, stop() waits on the lock until it is cleared
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final Object dispatchDone = new Object();
+    private final Runnable dispatchTask = this::dispatch;
+    private final DeviceUpdateListener notifyListeners = this::notifyListeners;
+    private volatile DeviceUpdateListener[] listeners = new DeviceUpdateListener[0];
+    private final ScheduledExecutorService scheduler = ThreadPoolManager
             .getScheduledPool(ThreadPoolManager.THREAD_POOL_NAME_COMMON);
+    private volatile Executor dispatchExecutor = scheduler;
+    private @Nullable ExecutorService virtualExecutor;
+    private @Nullable Pack pendingPack;
+    private final Map<String, GatewaySession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Pack> scenePacks = new ConcurrentHashMap<>();
+    // one limiter per kind of message, so a failing listener does not hide rejected requests of the same device
+    private final LogLimiter decodeLogLimiter = new LogLimiter(LOG_INTERVAL_NANOS);
+    private final LogLimiter listenerLogLimiter = new LogLimiter(LOG_INTERVAL_NANOS);
+    private final LogLimiter rejectLogLimiter = new LogLimiter(LOG_INTERVAL_NANOS);
+    private final PacketCapture capture = new PacketCapture();
+    private volatile GatewaySession[] sessionArray = new GatewaySession[0];
+    private int nextSession;
+    private final int targetPort;
 
     public MotionblindsMulticastManager(NetworkAddressService networkAddressService) {
+        this(networkAddressService, DEFAULT_MULTICAST_GROUP, DEFAULT_BIND_PORT, DEFAULT_TARGET_PORT);
+    }
+
+    /**
+     * Creates a manager using another group or other ports than the Motion gateways, e.g. to run
+     * against simulated gateways on the loopback interface. A bind port of 0 picks a free port, see
+     * {@link #getLocalPort()}.
+     */
+    public MotionblindsMulticastManager(NetworkAddressService networkAddressService, String multicastGroup,
+            int bindPort, int targetPort) {
         this.networkAddressService = networkAddressService;
+        this.multicastGroup = multicastGroup;
+        this.bindPort = bindPort;
+        this.targetPort = targetPort;
+        this.targetAddress = new InetSocketAddress(multicastGroup, targetPort);
     }
 
     public void start() {
-        getNetworkInterface();
-        ScheduledFuture<?> multicastStartJob = this.multicastStartJob;
-        if (multicastStartJob == null || multicastStartJob.isCancelled()) {
-            this.multicastStartJob = scheduler.schedule(() -> {
+        start(ExecutionMode.POOLED);
+    }
+
+    /**
+     * Starts the event loop. Receiving, decoding and retransmitting never block and stay on the event
+     * loop thread for all gateways, which share one socket; the mode only selects where the device
+     * update listeners run.
+     * <p>
+     * A running event loop only switches to the mode. An event loop that did not stop in time is
+     * waited for another {@link #STOP_TIMEOUT_NANOS}, the manager stays stopped if it is still alive.
+     */
+    public void start(ExecutionMode mode) {
+        Thread previous;
+        synchronized (this) {
+            previous = this.eventLoop;
+            if (previous != null && previous.isAlive() && !stop) {
+                setExecutionMode(mode);
+                return;
+            }
+        }
+        if (previous != null && previous.isAlive()) {
+            try {
+                previous.join(TimeUnit.NANOSECONDS.toMillis(STOP_TIMEOUT_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        synchronized (this) {
+            if (this.eventLoop != previous) {
+                // started by another caller meanwhile
+                return;
+            }
+            if (previous != null && previous.isAlive()) {
+                logger.warn("Previous multicast event loop is still running, not starting a new one");
+                return;
+            }
+            stop = false;
+            applyExecutionMode(mode);
+            Thread eventLoop = new NamedThreadFactory("motionblinds").newThread(this::run);
+            this.eventLoop = eventLoop;
+            eventLoop.start();
+        }
+    }
+
+    /**
+     * Switches where the device update listeners run without touching the socket. Updates already
+     * handed to the previous executor still run there.
+     */
+    public synchronized void setExecutionMode(ExecutionMode mode) {
+        if (mode == getExecutionMode()) {
+            return;
+        }
+        ExecutorService previous = virtualExecutor;
+        applyExecutionMode(mode);
+        if (previous != null) {
+            previous.shutdown();
+        }
+        logger.debug("Execution mode changed to {}", getExecutionMode());
+    }
+
+    private void applyExecutionMode(ExecutionMode mode) {
+        virtualExecutor = null;
+        dispatchExecutor = scheduler;
+        if (mode == ExecutionMode.VIRTUAL) {
+            ExecutorService virtualExecutor = VirtualThreads.newThreadPerTaskExecutor("motionblinds-dispatch-");
+            if (virtualExecutor != null) {
+                this.virtualExecutor = virtualExecutor;
+                dispatchExecutor = virtualExecutor;
+            } else {
+                logger.info("Virtual threads need Java 21, device updates are dispatched on the shared pool");
+            }
+        }
+    }
+
+    /**
+     * Runs the event loop and reopens the socket when it fails, see {@link SocketSupervisor}.
+     */
+    private void run() {
+        try (Selector selector = Selector.open()) {
+            this.selector = selector;
+            while (!stop) {
+                long backoff = 0;
                 try {
-                    final String primaryIpv4HostAddress = this.networkAddressService.getPrimaryIpv4HostAddress();
-                    if (primaryIpv4HostAddress != null) {
-                        NetworkInterface netIF = NetworkInterface
-                                .getByInetAddress(InetAddress.getByName(primaryIpv4HostAddress));
-                        InetSocketAddress address = new InetSocketAddress(bindPort);
-                        this.multicastSocket = new MulticastSocket(address);
-                        final MulticastSocket msock = this.multicastSocket;
-                        if (msock != null) {
-                            msock.setBroadcast(true);
-                            msock.setTimeToLive(5);
-                            msock.setNetworkInterface(netIF);
-                            InetSocketAddress bcAddress = new InetSocketAddress(multicastGroup, bindPort);
-                            msock.joinGroup(bcAddress, netIF);
-                            msock.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, false);
-                            this.isStart = true;
-                            logger.debug("multicast start ok ! interface = {}, bind port = {}, group = {}", netIF,
-                                    bindPort, multicastGroup);
-                        }
-                    } else {
-                        logger.error("Cannot get primaryIpv4HostAddress");
+                    DatagramChannel channel = openChannel(selector);
+                    supervisor.opened(System.nanoTime());
+                    loop(selector, channel);
+                    drainOnStop(channel);
+                } catch (IOException | RuntimeException e) {
+                    if (!stop) {
+                        metrics.restarts.increment();
+                        backoff = supervisor.failed(System.nanoTime());
+                        logger.warn("Multicast error, reopening multicast in {} ms: {}",
+                                TimeUnit.NANOSECONDS.toMillis(backoff), e.getLocalizedMessage());
                     }
-                } catch (Exception e) {
-                    logger.error("Error starting multicast {}", e.getLocalizedMessage());
-                    isStart = false;
+                } finally {
+                    closeChannel();
                 }
-            }, 5, TimeUnit.MILLISECONDS);
-            this.receive();
-            this.send();
-        }
-    }
-
-    public void send() {
-        ScheduledFuture<?> multicastSendJob = this.multicastSendJob;
-        if (multicastSendJob == null || multicastSendJob.isCancelled()) {
-            this.multicastSendJob = scheduler.schedule(() -> {
-                InetSocketAddress inetSocketAddress = new InetSocketAddress(multicastGroup, targetPort);
-                while (multicastSocket != null) {
-                    try {
-                        Pack pack = sendQueue.take();
-                        byte[] bytes = pack.jsonData.getBytes(StandardCharsets.UTF_8);
-                        DatagramPacket datagramPacket = new DatagramPacket(bytes, bytes.length, inetSocketAddress);
-                        int i = pack.sendCount;
-                        final MulticastSocket msock = multicastSocket;
-                        if (msock != null) {
-                            for (int i2 = 0; i2 < i; i2++) {
-                                msock.send(datagramPacket);
-                                Thread.sleep(500);
-                            }
-                        } else {
-                            logger.error("MulticastSocket is null");
-                        }
-                        if (!pack.jsonData.isEmpty()) {
-                            logger.trace("sending request: {}", pack.jsonData);
-                        } else {
-                            logger.error("Empty request");
-                        }
-                    } catch (Exception e) {
-                        logger.error("Cannot send data, restarting multicast");
-                        if (isStart) {
-                            if (!stop) {
-                                try {
-                                    Thread.sleep(1000L);
-                                } catch (Exception unused) {
-                                }
-                                isStart = false;
-                                start();
-                            }
-                        }
-                        return;
-                    }
+                waitBackoff(selector, backoff);
+            }
+        } catch (IOException e) {
+            logger.error("Cannot open selector {}", e.getLocalizedMessage());
+        } finally {
+            this.selector = null;
+            discardPending();
+            supervisor.stopped();
+        }
+    }
+
+    /**
+     * Sends the first datagram of the commands still queued when the engine stops, as far as the
+     * socket takes them without waiting. Polls and retransmissions are not worth delaying the stop.
+     */
+    private void drainOnStop(DatagramChannel channel) throws IOException {
+        long now = System.nanoTime();
+        Pack pack = pendingPack;
+        if (pack != null && pack.lane == SendQueue.Lane.INTERACTIVE && !sendFirst(channel, pack, now)) {
+            return;
+        }
+        pendingPack = null;
+        drain(channel, SendQueue.Lane.INTERACTIVE, now, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Forgets everything that was not sent, so a restart does not send stale requests.
+     */
+    private void discardPending() {
+        int dropped = sendQueue.clear();
+        for (GatewaySession session : sessionArray) {
+            dropped += session.getSendQueue().clear();
+        }
+        if (pendingPack != null) {
+            pendingPack = null;
+            dropped++;
+        }
+        retransmits.clear();
+        duePacks.clear();
+        scenePacks.clear();
+        if (dropped > 0) {
+            logger.debug("Discarded {} requests not sent before the stop", dropped);
+        }
+    }
+
+    /**
+     * Waits before the socket is reopened. Requests sent meanwhile wake the selector, so the wait
+     * continues until the deadline.
+     */
+    private void waitBackoff(Selector selector, long backoff) throws IOException {
+        long deadline = System.nanoTime() + backoff;
+        long remaining;
+        while (!stop && (remaining = deadline - System.nanoTime()) > 0) {
+            selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            selector.selectedKeys().clear();
+        }
+    }
+
+    private DatagramChannel openChannel(Selector selector) throws IOException {
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        this.channel = channel;
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(bindPort));
+        if (channel.getLocalAddress() instanceof InetSocketAddress local) {
+            localPort = local.getPort();
+        }
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 5);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, false);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+        updateInterfaces(selector, channel);
+        if (interfaceArray.length == 0) {
+            throw new IOException("No IPv4 interface to join " + multicastGroup);
+        }
+        logger.debug("multicast start ok ! interfaces = {}, bind port = {}, group = {}", interfaceChannels.keySet(),
+                localPort, multicastGroup);
+        return channel;
+    }
+
+    /**
+     * Opens channels for new interfaces and closes the channels of interfaces that went down or
+     * changed their address, leaving the others untouched.
+     */
+    private void updateInterfaces(Selector selector, DatagramChannel channel) {
+        nextInterfaceCheck = System.nanoTime() + INTERFACE_CHECK_NANOS;
+        Map<String, InterfaceChannel> eligible = eligibleInterfaces();
+        boolean changed = interfaceChannels.keySet().removeIf(key -> {
+            if (eligible.containsKey(key)) {
+                return false;
+            }
+            InterfaceChannel removed = interfaceChannels.get(key);
+            if (removed != null) {
+                removed.close();
+            }
+            logger.debug("Left multicast group on {}", key);
+            return true;
+        });
+        for (InterfaceChannel candidate : eligible.values()) {
+            if (interfaceChannels.containsKey(candidate.getKey())) {
+                continue;
+            }
+            try {
+                candidate.open(selector, channel, InetAddress.getByName(multicastGroup), localPort);
+                interfaceChannels.put(candidate.getKey(), candidate);
+                changed = true;
+                logger.debug("Joined multicast group on {}", candidate);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Cannot join multicast group on {}: {}", candidate, e.getLocalizedMessage());
+            }
+        }
+        if (changed) {
+            interfaceArray = interfaceChannels.values().toArray(new InterfaceChannel[0]);
+        }
+    }
+
+    /**
+     * @return unopened channels for the first IPv4 address of every interface that is up and supports
+     *         multicast, or for the primary address if there is none, or for the loopback interface if
+     *         there is no primary address either
+     */
+    private Map<String, InterfaceChannel> eligibleInterfaces() {
+        getNetworkInterface();
+        Map<String, InterfaceChannel> eligible = new HashMap<>();
+        for (NetworkInterface networkInterface : interfacesAddresses) {
+            try {
+                if (networkInterface.supportsMulticast()) {
+                    addFirstIpv4Address(eligible, networkInterface, null);
                 }
-            }, 1, TimeUnit.SECONDS);
-        }
-    }
-
-    public void receive() {
-        ScheduledFuture<?> multicastReceiveJob = this.multicastReceiveJob;
-        if (multicastReceiveJob == null || multicastReceiveJob.isCancelled()) {
-            this.multicastReceiveJob = scheduler.schedule(() -> {
-                byte[] bArr = new byte[102400];
-                DatagramPacket datagramPacket = new DatagramPacket(bArr, 102400);
-                while (multicastSocket != null) {
-                    try {
-                        final MulticastSocket msock = multicastSocket;
-                        if (msock != null) {
-                            msock.receive(datagramPacket);
-                            int length = datagramPacket.getLength();
-                            byte[] bArr2 = new byte[length];
-                            System.arraycopy(bArr, 0, bArr2, 0, length);
-                            String str = new String(bArr2, 0, length, StandardCharsets.UTF_8);
-                            receiveQueue.put(str);
-                        }
-                    } catch (Exception e) {
-                        logger.error("receive data error {}", e.getLocalizedMessage());
-                        if (isStart) {
-                            try {
-                                Thread.sleep(1000L);
-                            } catch (Exception ignored) {
-                            }
-                            isStart = false;
-                            start();
-                        }
-                        return;
+            } catch (SocketException e) {
+                logger.debug("Cannot check network interface '{}': '{}'", networkInterface.getName(),
+                        e.getMessage());
+            }
+        }
+        if (eligible.isEmpty()) {
+            String primaryIpv4HostAddress = networkAddressService.getPrimaryIpv4HostAddress();
+            try {
+                if (primaryIpv4HostAddress != null) {
+                    InetAddress primary = InetAddress.getByName(primaryIpv4HostAddress);
+                    NetworkInterface networkInterface = NetworkInterface.getByInetAddress(primary);
+                    if (networkInterface != null) {
+                        addFirstIpv4Address(eligible, networkInterface, primary);
                     }
                 }
-            }, 1, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                logger.debug("Cannot get interface of primary address {}: {}", primaryIpv4HostAddress,
+                        e.getLocalizedMessage());
+            }
         }
-        consumData();
+        if (eligible.isEmpty()) {
+            // no network, at least gateways simulated on this host can be reached
+            try {
+                NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+                if (loopback != null) {
+                    addFirstIpv4Address(eligible, loopback, null);
+                }
+            } catch (SocketException e) {
+                logger.debug("Cannot get loopback interface: {}", e.getLocalizedMessage());
+            }
+        }
+        return eligible;
     }
 
-    private void consumData() {
-        ScheduledFuture<?> multicastConsumJob = this.multicastConsumJob;
-        if (multicastConsumJob == null || multicastConsumJob.isCancelled()) {
-            this.multicastConsumJob = scheduler.schedule(() -> {
-                while (isStart) {
-                    try {
-                        String data = receiveQueue.take();
-                        if (!data.isEmpty()) {
-                            dealWithData(JsonParser.parseString(data).getAsJsonObject());
-                        }
-                    } catch (Exception e) {
-                        logger.error("receiveQueue data error {}", e.getLocalizedMessage());
-                    }
+    private void addFirstIpv4Address(Map<String, InterfaceChannel> eligible, NetworkInterface networkInterface,
+            @Nullable InetAddress wanted) {
+        for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
+            if (interfaceAddress.getAddress() instanceof Inet4Address address
+                    && (wanted == null || wanted.equals(address))) {
+                InterfaceChannel candidate = new InterfaceChannel(networkInterface, address,
+                        interfaceAddress.getNetworkPrefixLength());
+                eligible.put(candidate.getKey(), candidate);
+                return;
+            }
+        }
+    }
+
+    private void closeInterface(InterfaceChannel interfaceChannel) {
+        interfaceChannel.close();
+        if (interfaceChannels.remove(interfaceChannel.getKey(), interfaceChannel)) {
+            interfaceArray = interfaceChannels.values().toArray(new InterfaceChannel[0]);
+        }
+    }
+
+    private void closeChannel() {
+        for (InterfaceChannel interfaceChannel : interfaceChannels.values()) {
+            interfaceChannel.close();
+        }
+        interfaceChannels.clear();
+        interfaceArray = new InterfaceChannel[0];
+        localPort = -1;
+        final DatagramChannel channel = this.channel;
+        this.channel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Cannot close channel {}", e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Serves the channels until the event loop is stopped, rechecking the interfaces every
+     * {@link #INTERFACE_CHECK_NANOS}.
+     */
+    private void loop(Selector selector, DatagramChannel channel) throws IOException {
+        while (!stop) {
+            long now = System.nanoTime();
+            if (now - nextInterfaceCheck >= 0) {
+                updateInterfaces(selector, channel);
+            }
+            if (!transmit(channel)) {
+                DatagramChannel blocked = blockedChannel;
+                SelectionKey blockedKey = blocked != null ? blocked.keyFor(selector) : null;
+                if (blockedKey != null && blockedKey.isValid()) {
+                    blockedKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
                 }
-            }, 1, TimeUnit.SECONDS);
+            }
+            now = System.nanoTime();
+            long untilNextTick = retransmits.nanosUntilNextTick(now);
+            long timeout = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextInterfaceCheck - now));
+            if (untilNextTick >= 0) {
+                timeout = Math.min(timeout, Math.max(1, TimeUnit.NANOSECONDS.toMillis(untilNextTick)));
+            }
+            if (!updateRing.flushOverflow()) {
+                timeout = Math.min(timeout, OVERFLOW_RETRY_MILLIS);
+            }
+            scheduleDispatch();
+            selector.select(selectedKeyHandler, timeout);
+        }
+    }
+
+    private void handleSelectedKey(SelectionKey key) {
+        InterfaceChannel via = key.attachment() instanceof InterfaceChannel interfaceChannel ? interfaceChannel
+                : null;
+        try {
+            if (key.isValid() && key.isReadable()) {
+                receive((DatagramChannel) key.channel(), via);
+            }
+            if (key.isValid() && key.isWritable()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            if (via == null) {
+                throw new UncheckedIOException(e);
+            }
+            // only this interface is affected, the next interface check opens it again
+            logger.debug("Closing channel of {}: {}", via, e.getLocalizedMessage());
+            closeInterface(via);
         }
     }
 
-    public void dealWithData(JsonObject data) {
-        // data = new JSONObject(dta);
-        String msgType = data.get("msgType").getAsString();
-        if ("Heartbeat".equals(msgType)) {
-            curtainMotor.heartBeat(data);
+    /**
+     * @param via the interface channel the datagrams are received on, <code>null</code> for the group
+     *            channel
+     */
+    private void receive(DatagramChannel channel, @Nullable InterfaceChannel via) throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress from = channel.receive(receiveBuffer);
+            if (from == null) {
+                return;
+            }
+            metrics.packetsReceived.increment();
+            if (!receiveBuffer.hasRemaining()) {
+                logger.debug("Discarding datagram from {} larger than {} bytes", from, BUFFER_SIZE);
+                continue;
+            }
+            receiveBuffer.flip();
+            if (capture.isEnabled()) {
+                capture.received(from, receiveBuffer);
+            }
+            if (decoder.decode(receiveBuffer, message)) {
+                dealWithData(message);
+                learnGateway(message, from, via);
+            } else {
+                metrics.parseFailures.increment();
+                // keyed by the sender without formatting it, a flood of garbage must not allocate
+                Object sender = from instanceof InetSocketAddress source ? source.getAddress() : from;
+                long suppressed = decodeLogLimiter.acquire(sender, System.nanoTime());
+                if (suppressed >= 0) {
+                    logger.debug("Cannot decode gateway message from {} ({} more suppressed)", from, suppressed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the session of the gateway a message came from. Sessions are opened by the Heartbeat
+     * or device list of a gateway.
+     */
+    private void learnGateway(MotionblindsMessage data, SocketAddress from, @Nullable InterfaceChannel via) {
+        if (data.getMac().isEmpty() || !(from instanceof InetSocketAddress source)) {
+            return;
+        }
+        boolean fromGateway = data.getType() == MotionblindsMessage.Type.HEARTBEAT
+                || data.getType() == MotionblindsMessage.Type.GET_DEVICE_LIST_ACK;
+        GatewaySession session;
+        if (fromGateway) {
+            String gatewayMac = MotionblindsDeviceRegistry.gatewayMacOf(data.getMac());
+            session = sessions.get(gatewayMac);
+            if (session == null) {
+                session = openSession(gatewayMac);
+            }
         } else {
-            // System.out.println("dealWithData: " + data);
+            CurtainMotor motor = deviceRegistry.getMotor(data.getMac());
+            session = motor != null ? sessions.get(motor.getGatewayMac()) : null;
+            if (session == null) {
+                return;
+            }
+        }
+        session.received.increment();
+        session.seen(source.getAddress(), fromGateway ? data.getToken() : "",
+                via != null ? via : interfaceOf(source.getAddress()), System.nanoTime());
+    }
+
+    /**
+     * @return the interface whose subnet holds the address, for datagrams received on the group
+     *         channel
+     */
+    private @Nullable InterfaceChannel interfaceOf(InetAddress address) {
+        for (InterfaceChannel interfaceChannel : interfaceArray) {
+            if (interfaceChannel.contains(address)) {
+                return interfaceChannel;
+            }
+        }
+        return null;
+    }
+
+    private synchronized GatewaySession openSession(String gatewayMac) {
+        GatewaySession session = sessions.get(gatewayMac);
+        if (session == null) {
+            session = new GatewaySession(gatewayMac, targetPort);
+            sessions.put(gatewayMac, session);
+            GatewaySession[] current = sessionArray;
+            GatewaySession[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = session;
+            sessionArray = updated;
+            logger.debug("Gateway {} seen", gatewayMac);
+        }
+        return session;
+    }
+
+    /**
+     * Sends queued packs and due retransmissions until the socket buffer is full: first the
+     * interactive lanes, then the retransmissions, then the background lanes. When the socket keeps
+     * filling up before the lower lanes are reached, they get one datagram ahead of the interactive
+     * lane every {@link #STARVATION_LIMIT} passes.
+     *
+     * @return <code>false</code> if the socket could not take all datagrams
+     */
+    private boolean transmit(DatagramChannel channel) throws IOException {
+        long now = System.nanoTime();
+        retransmits.expire(now, duePacks);
+        Pack pack = pendingPack;
+        if (pack != null) {
+            if (!sendFirst(channel, pack, now)) {
+                return false;
+            }
+            pendingPack = null;
+        }
+        if (starvedPasses >= STARVATION_LIMIT) {
+            starvedPasses = 0;
+            if (!sendRetransmits(channel, now, 1) || !drain(channel, SendQueue.Lane.BACKGROUND, now, 1)) {
+                return false;
+            }
+        }
+        if (!drain(channel, SendQueue.Lane.INTERACTIVE, now, Integer.MAX_VALUE)
+                || !sendRetransmits(channel, now, Integer.MAX_VALUE)) {
+            starvedPasses++;
+            return false;
+        }
+        if (!drain(channel, SendQueue.Lane.BACKGROUND, now, Integer.MAX_VALUE)) {
+            return false;
+        }
+        starvedPasses = 0;
+        return true;
+    }
+
+    private boolean sendRetransmits(DatagramChannel channel, long now, int limit) throws IOException {
+        Pack pack;
+        int sent = 0;
+        while (sent < limit && (pack = duePacks.peek()) != null) {
+            if (pack.remaining > 0) {
+                if (!sendPack(channel, pack)) {
+                    return false;
+                }
+                metrics.retransmits.increment();
+                reschedule(pack, now);
+                sent++;
+            }
+            duePacks.poll();
         }
+        return true;
     }
 
+    /**
+     * Sends a lane of the multicast queue, then of the gateway queues in turns, starting with a
+     * different gateway every time.
+     */
+    private boolean drain(DatagramChannel channel, SendQueue.Lane lane, long now, int limit) throws IOException {
+        int remaining = drain(channel, sendQueue, lane, now, limit);
+        GatewaySession[] sessions = sessionArray;
+        for (int i = 0; i < sessions.length && remaining > 0; i++) {
+            int index = Math.floorMod(nextSession + i, sessions.length);
+            remaining = drain(channel, sessions[index].getSendQueue(), lane, now, remaining);
+            if (remaining < 0) {
+                nextSession = (index + 1) % sessions.length;
+                return false;
+            }
+        }
+        if (sessions.length > 0) {
+            nextSession = Math.floorMod(nextSession + 1, sessions.length);
+        }
+        return remaining >= 0;
+    }
+
+    /**
+     * @return the packs still allowed to be sent, -1 if the socket is full
+     */
+    private int drain(DatagramChannel channel, SendQueue queue, SendQueue.Lane lane, long now, int limit)
+            throws IOException {
+        int remaining = limit;
+        Pack pack;
+        while (remaining > 0 && (pack = queue.poll(lane)) != null) {
+            if (!sendFirst(channel, pack, now)) {
+                pendingPack = pack;
+                return -1;
+            }
+            remaining--;
+        }
+        return remaining;
+    }
+
+    private boolean sendFirst(DatagramChannel channel, Pack pack, long now) throws IOException {
+        if (!sendPack(channel, pack)) {
+            return false;
+        }
+        pack.firstSent = now;
+        if (pack.lane == SendQueue.Lane.INTERACTIVE) {
+            metrics.interactiveQueueWait.record(System.nanoTime() - pack.queuedAt);
+        }
+        SceneExecution scene = pack.scene;
+        if (scene != null) {
+            // the pass time is shared by all packs, the spread needs the real send time
+            scene.sent(pack.sceneIndex, System.nanoTime());
+        }
+        if (pack.coalesce) {
+            // copies of an older command would fight the new one
+            retransmits.cancel(pack.mac);
+        }
+        logger.trace("sending request: {}", pack);
+        reschedule(pack, now);
+        return true;
+    }
+
+    /**
+     * Sends a pack unicast through the interface its gateway was seen on, or multicast out of every
+     * interface. A multicast pack that does not fit into one of the socket buffers is sent again on
+     * all interfaces, which gateways take as a repeated request.
+     *
+     * @param channel the group channel, used when the gateway is in no subnet of an interface
+     */
+    private boolean sendPack(DatagramChannel channel, Pack pack) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put(pack.bytes).flip();
+        GatewaySession session = pack.session;
+        InetSocketAddress target = session != null ? session.getAddress() : null;
+        if (session != null && target != null) {
+            InterfaceChannel via = session.getVia();
+            if (!sendTo(via != null && via.isOpen() ? via : null, channel, target)) {
+                return false;
+            }
+            session.sent.increment();
+        } else {
+            InterfaceChannel[] interfaces = interfaceArray;
+            if (interfaces.length == 0 && !sendTo(null, channel, targetAddress)) {
+                return false;
+            }
+            for (InterfaceChannel interfaceChannel : interfaces) {
+                sendBuffer.rewind();
+                if (!sendTo(interfaceChannel, channel, targetAddress)) {
+                    return false;
+                }
+            }
+        }
+        if (capture.isEnabled()) {
+            capture.sent(target != null ? target : targetAddress, pack.bytes);
+        }
+        metrics.packetsSent.increment();
+        return true;
+    }
+
+    /**
+     * @return <code>false</code> if the socket buffer of the channel is full
+     */
+    private boolean sendTo(@Nullable InterfaceChannel via, DatagramChannel groupChannel, InetSocketAddress target)
+            throws IOException {
+        DatagramChannel viaChannel = via != null ? via.getChannel() : null;
+        DatagramChannel sendChannel = viaChannel != null ? viaChannel : groupChannel;
+        try {
+            if (sendChannel.send(sendBuffer, target) == 0) {
+                blockedChannel = sendChannel;
+                return false;
+            }
+        } catch (IOException e) {
+            if (via == null) {
+                throw e;
+            }
+            logger.debug("Closing channel of {}: {}", via, e.getLocalizedMessage());
+            closeInterface(via);
+        }
+        return true;
+    }
+
+    private void reschedule(Pack pack, long now) {
+        if (--pack.remaining > 0) {
+            retransmits.schedule(pack, now, RETRANSMIT_INTERVAL_NANOS);
+        } else {
+            retransmits.done(pack);
+        }
+    }
+
+    public void dealWithData(MotionblindsMessage data) {
+        switch (data.getType()) {
+            case HEARTBEAT -> {
+                if (!data.getMac().isEmpty()) {
+                    CurtainMotor motor = deviceRegistry.getOrCreate(data.getMac());
+                    motor.update(data);
+                    publish(motor, data.getType());
+                }
+            }
+            case REPORT, WRITE_DEVICE_ACK, READ_DEVICE_ACK -> {
+                if (!data.getMac().isEmpty()) {
+                    long now = System.nanoTime();
+                    retransmits.acknowledge(data.getMac(), now);
+                    acknowledgeScene(data.getMac(), now);
+                    CurtainMotor motor = deviceRegistry.getOrCreate(data.getMac());
+                    motor.update(data);
+                    publish(motor, data.getType());
+                }
+            }
+            case GET_DEVICE_LIST_ACK -> {
+                for (int i = 0; i < data.getDeviceCount(); i++) {
+                    if (data.getDeviceMac(i).isEmpty()) {
+                        continue;
+                    }
+                    CurtainMotor motor = deviceRegistry.getOrCreate(data.getDeviceMac(i));
+                    motor.setDeviceType(data.getDeviceType(i));
+                    publish(motor, data.getType());
+                }
+            }
+            default -> logger.trace("Ignoring message of type {}", data.getType());
+        }
+    }
+
+    private void acknowledgeScene(String mac, long now) {
+        if (scenePacks.isEmpty()) {
+            return;
+        }
+        Pack pack = scenePacks.get(mac);
+        SceneExecution scene = pack != null ? pack.scene : null;
+        if (pack != null && scene != null && pack.firstSent != 0) {
+            scenePacks.remove(mac, pack);
+            scene.acknowledged(pack.sceneIndex, now);
+        }
+    }
+
+    private void publish(CurtainMotor motor, MotionblindsMessage.Type type) {
+        if (listeners.length > 0 && !updateRing.publish(motor, type)) {
+            metrics.updatesDropped.increment();
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (!updateRing.isEmpty() && dispatchScheduled.compareAndSet(false, true)) {
+            try {
+                dispatchExecutor.execute(dispatchTask);
+            } catch (RejectedExecutionException e) {
+                // stopping, the remaining updates are dropped
+                dispatchScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners of all waiting updates. Runs on the shared pool only while there is
+     * something to deliver.
+     */
+    private void dispatch() {
+        do {
+            updateRing.drain(notifyListeners);
+            dispatchScheduled.set(false);
+        } while (!updateRing.isEmpty() && dispatchScheduled.compareAndSet(false, true));
+        if (stop) {
+            synchronized (dispatchDone) {
+                dispatchDone.notifyAll();
+            }
+        }
+    }
+
+    private void notifyListeners(CurtainMotor motor, MotionblindsMessage.Type type) {
+        for (DeviceUpdateListener listener : listeners) {
+            try {
+                listener.deviceUpdated(motor, type);
+            } catch (RuntimeException e) {
+                long suppressed = listenerLogLimiter.acquire(motor.getMac(), System.nanoTime());
+                if (suppressed >= 0) {
+                    logger.warn("Device update listener failed for {} ({} more suppressed): {}", motor.getMac(),
+                            suppressed, e.getMessage());
+                }
+            }
+        }
+    }
+
+    public synchronized void addDeviceUpdateListener(DeviceUpdateListener listener) {
+        DeviceUpdateListener[] current = listeners;
+        DeviceUpdateListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeDeviceUpdateListener(DeviceUpdateListener listener) {
+        listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(DeviceUpdateListener[]::new);
+    }
+
+    public @Nullable GatewaySession getSession(String gatewayMac) {
+        return sessions.get(gatewayMac);
+    }
+
+    public Collection<GatewaySession> getSessions() {
+        return List.of(sessionArray);
+    }
+
+    public PacketCapture getCapture() {
+        return capture;
+    }
+
+    public MulticastMetrics getMetrics() {
+        return metrics;
+    }
+
+    public DeviceUpdateRing getUpdateRing() {
+        return updateRing;
+    }
+
+    public MotionblindsDeviceRegistry getDeviceRegistry() {
+        return deviceRegistry;
+    }
+
+    /**
+     * Looks up the IPv4 interfaces again, replacing the list of the previous lookup.
+     */
     public void getNetworkInterface() {
+        List<NetworkInterface> interfaces = new ArrayList<>();
         try {
             Enumeration<NetworkInterface> networkInterfaces = NetworkInterface.getNetworkInterfaces();
             while (networkInterfaces.hasMoreElements()) {
@@ -236,7 +918,8 @@ public class MotionblindsMulticastManager {
                     if (nextElement.isUp() && !nextElement.isLoopback()) {
                         for (InterfaceAddress ifaceAddr : nextElement.getInterfaceAddresses()) {
                             if (ifaceAddr.getAddress() instanceof Inet4Address) {
-                                interfacesAddresses.add(nextElement);
+                                interfaces.add(nextElement);
+                                break;
                             }
                         }
                     }
@@ -248,37 +931,274 @@ public class MotionblindsMulticastManager {
         } catch (Exception e) {
             logger.error("Error getting interfaces {}", e.getLocalizedMessage());
         }
+        interfacesAddresses = List.copyOf(interfaces);
+    }
+
+    public List<NetworkInterface> getInterfacesAddresses() {
+        return interfacesAddresses;
     }
 
+    /**
+     * @return the interfaces the group is currently joined on
+     */
+    public List<InterfaceChannel> getInterfaceChannels() {
+        return List.of(interfaceArray);
+    }
+
+    public SocketSupervisor getSupervisor() {
+        return supervisor;
+    }
+
+    /**
+     * Stops the event loop and waits at most {@link #STOP_TIMEOUT_NANOS} for it and for the dispatch
+     * of device updates, in both execution modes, so no listener runs any more once this returns in
+     * time. Commands still queued get their first datagram before the socket is closed.
+     */
     public void stop() {
-        final MulticastSocket msock = this.multicastSocket;
-        if (msock != null) {
-            msock.close();
+        long deadline = System.nanoTime() + STOP_TIMEOUT_NANOS;
+        Thread eventLoop;
+        ExecutorService virtualExecutor;
+        synchronized (this) {
+            this.stop = true;
+            final Selector selector = this.selector;
+            if (selector != null) {
+                selector.wakeup();
+            }
+            eventLoop = this.eventLoop;
+            virtualExecutor = this.virtualExecutor;
+            this.virtualExecutor = null;
+            dispatchExecutor = scheduler;
         }
-        this.stop = true;
+        try {
+            if (eventLoop != null && eventLoop != Thread.currentThread()) {
+                eventLoop.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                if (eventLoop.isAlive()) {
+                    logger.warn("Multicast event loop did not stop within {} ms",
+                            TimeUnit.NANOSECONDS.toMillis(STOP_TIMEOUT_NANOS));
+                }
+            }
+            awaitDispatch(deadline);
+            if (virtualExecutor != null) {
+                // the running dispatch finishes its listeners, new updates are not dispatched any more
+                virtualExecutor.shutdown();
+                if (!virtualExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS)) {
+                    virtualExecutor.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            if (virtualExecutor != null) {
+                virtualExecutor.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitDispatch(long deadline) throws InterruptedException {
+        synchronized (dispatchDone) {
+            long remaining;
+            while (dispatchScheduled.get() && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(dispatchDone, remaining);
+            }
+        }
+        if (dispatchScheduled.get()) {
+            logger.warn("Device update listeners did not finish within {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(STOP_TIMEOUT_NANOS));
+        }
+    }
+
+    /**
+     * @return the mode the device update listeners currently run in
+     */
+    public ExecutionMode getExecutionMode() {
+        return virtualExecutor != null ? ExecutionMode.VIRTUAL : ExecutionMode.POOLED;
     }
 
     public class Pack {
-        public String jsonData;
         public int sendCount;
+        final String mac;
+        final boolean coalesce;
+        final SendQueue.Lane lane;
+        final byte[] bytes;
+        long queuedAt;
+        int remaining;
+        long firstSent;
+        boolean superseded;
+        @Nullable
+        GatewaySession session;
+        @Nullable
+        SceneExecution scene;
+        int sceneIndex;
+        // retransmit wheel bookkeeping, owned by the event loop
+        int slot = -1;
+        long rounds;
+        boolean tracked;
+        @Nullable
+        Pack prev;
+        @Nullable
+        Pack next;
 
         public Pack(String str) {
-            this.sendCount = 3;
-            this.jsonData = str;
+            this(3, str);
         }
 
         public Pack(int i, String str) {
-            // int unused = 3;
-            this.jsonData = str;
+            this(i, str, "", false);
+        }
+
+        public Pack(int i, String str, String mac, boolean coalesce) {
+            this(i, str.getBytes(StandardCharsets.UTF_8), mac, coalesce);
+        }
+
+        public Pack(int i, byte[] bytes, String mac, boolean coalesce) {
             this.sendCount = i;
+            this.mac = mac;
+            this.coalesce = coalesce;
+            // commands are what users wait for, requests without a command are polls and discovery
+            this.lane = coalesce ? SendQueue.Lane.INTERACTIVE : SendQueue.Lane.BACKGROUND;
+            this.bytes = bytes;
+            this.remaining = i;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    public boolean send(String str) {
+        return send(str, 3);
+    }
+
+    /**
+     * Multicasts a request to all gateways.
+     */
+    public boolean send(String str, int i) {
+        return send(new Pack(i, str));
+    }
+
+    /**
+     * Sends a command addressed to a single device, unicast to its gateway once the gateway address is
+     * known. A command for the same MAC that is still queued is replaced, and remaining copies are
+     * dropped as soon as the device answers with a <code>WriteDeviceAck</code> or <code>Report</code>.
+     */
+    public boolean send(String mac, String str, int i) {
+        return send(new Pack(i, str, mac, true));
+    }
+
+    /**
+     * Sends a single request, such as <code>ReadDevice</code>, to the gateway of a device without
+     * replacing queued commands for it.
+     */
+    public boolean sendRequest(String mac, String str) {
+        return send(new Pack(1, str, mac, false));
+    }
+
+    /**
+     * Sends a command encoded by the {@link MotionblindsCommandEncoder}, like
+     * {@link #send(String, String, int)}.
+     */
+    public boolean send(String mac, byte[] command, int i) {
+        return send(new Pack(i, command, mac, true));
+    }
+
+    /**
+     * Sends a request encoded by the {@link MotionblindsCommandEncoder}, like
+     * {@link #sendRequest(String, String)}.
+     */
+    public boolean sendRequest(String mac, byte[] request) {
+        return send(new Pack(1, request, mac, false));
+    }
+
+    /**
+     * Sends commands to several devices at once. All commands are queued before the event loop is
+     * woken up, so they leave the socket in one burst. The Motion protocol has no group command, so
+     * every device still gets its own <code>WriteDevice</code> request.
+     *
+     * @param macs the devices
+     * @param commands the commands encoded by the {@link MotionblindsCommandEncoder}, one per device
+     * @param i copies sent of every command
+     */
+    public SceneExecution sendScene(String[] macs, byte[][] commands, int i) {
+        SceneExecution scene = new SceneExecution(macs);
+        for (int index = 0; index < macs.length; index++) {
+            Pack pack = new Pack(i, commands[index], macs[index], true);
+            pack.scene = scene;
+            pack.sceneIndex = index;
+            Pack replaced = scenePacks.put(macs[index], pack);
+            SceneExecution replacedScene = replaced != null ? replaced.scene : null;
+            if (replaced != null && replacedScene != null) {
+                replacedScene.abandoned(replaced.sceneIndex);
+            }
+            if (!offer(pack)) {
+                scenePacks.remove(macs[index], pack);
+                scene.abandoned(index);
+            }
+        }
+        wakeup();
+        scene.getCompletion().completeOnTimeout(scene, SCENE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .whenComplete((result, e) -> scenePacks.values().removeIf(pack -> pack.scene == scene));
+        return scene;
+    }
+
+    /**
+     * @return <code>false</code> if the request was rejected because it is too large or the send
+     *         queue is full
+     */
+    private boolean send(Pack pack) {
+        if (!offer(pack)) {
+            return false;
+        }
+        wakeup();
+        return true;
+    }
+
+    private boolean offer(Pack pack) {
+        if (pack.bytes.length > BUFFER_SIZE) {
+            logger.warn("Request of {} bytes too large, not sent", pack.bytes.length);
+            return false;
+        }
+        SendQueue queue = sendQueue;
+        if (!pack.mac.isEmpty()) {
+            CurtainMotor motor = deviceRegistry.getMotor(pack.mac);
+            GatewaySession session = sessions.get(
+                    motor != null ? motor.getGatewayMac() : MotionblindsDeviceRegistry.gatewayMacOf(pack.mac));
+            if (session != null && session.getAddress() != null) {
+                pack.session = session;
+                queue = session.getSendQueue();
+            }
+        }
+        pack.queuedAt = System.nanoTime();
+        if (!queue.offer(pack)) {
+            long suppressed = rejectLogLimiter.acquire(pack.mac, pack.queuedAt);
+            if (suppressed >= 0) {
+                logger.warn("Send queue full ({} requests), rejecting request for {} ({} more suppressed)",
+                        queue.getCapacity(), pack.mac.isEmpty() ? "all gateways" : pack.mac, suppressed);
+            }
+            return false;
+        }
+        if (queue != sendQueue && pack.coalesce) {
+            // queued before the gateway address was known, must not go out after this one
+            sendQueue.supersede(pack.mac);
+        }
+        return true;
+    }
+
+    private void wakeup() {
+        final Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
         }
     }
 
-    public void send(String str) {
-        send(str, 3);
+    /**
+     * @return the port the socket is bound to, -1 while it is not open
+     */
+    public int getLocalPort() {
+        return localPort;
     }
 
-    public void send(String str, int i) {
-        this.sendQueue.offer(new Pack(i, str));
+    public SendQueue getSendQueue() {
+        return sendQueue;
     }
 }
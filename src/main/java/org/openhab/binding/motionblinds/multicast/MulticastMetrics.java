@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link MulticastMetrics} collects the counters of the multicast engine.
+ * <p>
+ * All counters are {@link LongAdder}s and the round trip times go to a {@link LatencyHistogram},
+ * so recording is lock free, does not allocate and can stay enabled under full load.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MulticastMetrics {
+    final LongAdder packetsReceived = new LongAdder();
+    final LongAdder packetsSent = new LongAdder();
+    final LongAdder parseFailures = new LongAdder();
+    final LongAdder retransmits = new LongAdder();
+    final LongAdder retransmitsCancelled = new LongAdder();
+    final LongAdder restarts = new LongAdder();
+    final LongAdder updatesDropped = new LongAdder();
+    final LatencyHistogram interactiveQueueWait = new LatencyHistogram();
+    private final LatencyHistogram ackRoundTrip = new LatencyHistogram();
+    private final Map<String, RoundTrip> roundTripByMac = new ConcurrentHashMap<>();
+
+    /**
+     * Records the time from the first copy of a command to the answer of the device.
+     */
+    void recordRoundTrip(String mac, long nanos) {
+        ackRoundTrip.record(nanos);
+        roundTripByMac.computeIfAbsent(mac, k -> new RoundTrip()).record(nanos);
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived.sum();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    public long getRetransmits() {
+        return retransmits.sum();
+    }
+
+    public long getRetransmitsCancelled() {
+        return retransmitsCancelled.sum();
+    }
+
+    /**
+     * @return device updates not handed to the listeners because the update ring and its overflow
+     *         queue were full
+     */
+    public long getUpdatesDropped() {
+        return updatesDropped.sum();
+    }
+
+    public long getRestarts() {
+        return restarts.sum();
+    }
+
+    /**
+     * @return the time commands waited between being queued and their first datagram
+     */
+    public LatencyHistogram getInteractiveQueueWait() {
+        return interactiveQueueWait;
+    }
+
+    public LatencyHistogram getAckRoundTrip() {
+        return ackRoundTrip;
+    }
+
+    public @Nullable RoundTrip getRoundTrip(String mac) {
+        return roundTripByMac.get(mac);
+    }
+
+    public Map<String, RoundTrip> getRoundTrips() {
+        return Map.copyOf(roundTripByMac);
+    }
+
+    /**
+     * Last and smoothed command round trip time of a single device.
+     */
+    public static class RoundTrip {
+        private volatile long last;
+        private volatile long average;
+
+        void record(long nanos) {
+            last = nanos;
+            long avg = average;
+            average = avg == 0 ? nanos : avg + (nanos - avg) / 8;
+        }
+
+        public long getLast() {
+            return last;
+        }
+
+        public long getAverage() {
+            return average;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.Locale;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link OverloadPolicy} selects what the {@link DeviceUpdateRing} does with an update of a motor that
+ * finds the ring full. Updates of a motor that already waits are always merged into it.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public enum OverloadPolicy {
+    /**
+     * Heartbeats are dropped, the next Heartbeat of the motor is delivered again. Reports and acks wait in
+     * the overflow queue.
+     */
+    DROP_HEARTBEATS,
+    /**
+     * All updates wait in the overflow queue, Heartbeats included.
+     */
+    DEFER_ALL;
+
+    /**
+     * @return the policy named by a configuration value, {@link #DROP_HEARTBEATS} if it is empty or unknown
+     */
+    public static OverloadPolicy parse(@Nullable Object value) {
+        if (value != null) {
+            for (OverloadPolicy policy : values()) {
+                if (policy.name().equals(value.toString().trim().toUpperCase(Locale.ROOT))) {
+                    return policy;
+                }
+            }
+        }
+        return DROP_HEARTBEATS;
+    }
+}
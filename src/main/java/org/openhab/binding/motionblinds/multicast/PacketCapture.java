@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link PacketCapture} keeps the last {@link #SLOTS} datagrams received and sent, for
+ * diagnosing gateways on demand.
+ * <p>
+ * The ring is only allocated while capturing. When capturing is off, the event loop only reads a
+ * volatile flag. Datagrams are truncated to {@link #MAX_LENGTH} bytes.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class PacketCapture {
+    static final int SLOTS = 256;
+    static final int MAX_LENGTH = 1024;
+
+    private volatile boolean enabled;
+    private byte @Nullable [][] data;
+    private int[] lengths = new int[0];
+    private long[] times = new long[0];
+    private boolean[] outbound = new boolean[0];
+    private @Nullable SocketAddress[] peers = new SocketAddress[0];
+    private long next;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void start() {
+        if (!enabled) {
+            data = new byte[SLOTS][MAX_LENGTH];
+            lengths = new int[SLOTS];
+            times = new long[SLOTS];
+            outbound = new boolean[SLOTS];
+            peers = new SocketAddress[SLOTS];
+            next = 0;
+            enabled = true;
+        }
+    }
+
+    /**
+     * Stops capturing and releases the ring.
+     */
+    public synchronized void stop() {
+        enabled = false;
+        data = null;
+        lengths = new int[0];
+        times = new long[0];
+        outbound = new boolean[0];
+        peers = new SocketAddress[0];
+    }
+
+    /**
+     * Records a received datagram, the buffer is left unchanged.
+     */
+    synchronized void received(SocketAddress from, ByteBuffer buffer) {
+        byte[][] data = this.data;
+        if (data == null) {
+            return;
+        }
+        int slot = slot(from, false);
+        int length = Math.min(buffer.remaining(), MAX_LENGTH);
+        buffer.get(buffer.position(), data[slot], 0, length);
+        lengths[slot] = length;
+    }
+
+    synchronized void sent(SocketAddress to, byte[] bytes) {
+        byte[][] data = this.data;
+        if (data == null) {
+            return;
+        }
+        int slot = slot(to, true);
+        int length = Math.min(bytes.length, MAX_LENGTH);
+        System.arraycopy(bytes, 0, data[slot], 0, length);
+        lengths[slot] = length;
+    }
+
+    private int slot(SocketAddress peer, boolean out) {
+        int slot = (int) (next++ % SLOTS);
+        times[slot] = System.currentTimeMillis();
+        outbound[slot] = out;
+        peers[slot] = peer;
+        return slot;
+    }
+
+    /**
+     * @return the captured datagrams, oldest first, one line each
+     */
+    public synchronized List<String> dump() {
+        List<String> lines = new ArrayList<>();
+        byte[][] data = this.data;
+        if (data == null) {
+            return lines;
+        }
+        for (long i = Math.max(0, next - SLOTS); i < next; i++) {
+            int slot = (int) (i % SLOTS);
+            SocketAddress peer = peers[slot];
+            String address = peer instanceof InetSocketAddress inet
+                    ? inet.getAddress().getHostAddress() + ":" + inet.getPort()
+                    : String.valueOf(peer);
+            lines.add(Instant.ofEpochMilli(times[slot]) + (outbound[slot] ? " > " : " < ") + address + " "
+                    + new String(data[slot], 0, lengths[slot], StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager.Pack;
+
+/**
+ * The {@link RetransmitScheduler} is a hashed timer wheel holding the packs that still have
+ * copies to send.
+ * <p>
+ * Retries of any number of packs are interleaved, and all pending retries for a MAC are
+ * cancelled as soon as the device acknowledges. Scheduling and cancelling are O(1). It is only
+ * used from the multicast event loop and is not thread safe.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class RetransmitScheduler {
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WHEEL_SIZE = 64;
+
+    private final @Nullable Pack[] wheel = new Pack[WHEEL_SIZE];
+    private final Map<String, List<Pack>> pendingByMac = new HashMap<>();
+    private final long startNanos;
+    private final MulticastMetrics metrics;
+    private long currentTick;
+    private int size;
+
+    public RetransmitScheduler(long startNanos, MulticastMetrics metrics) {
+        this.startNanos = startNanos;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Schedules the next copy of a pack <code>delayNanos</code> after <code>now</code>.
+     */
+    public void schedule(Pack pack, long now, long delayNanos) {
+        if (size == 0) {
+            currentTick = Math.max(currentTick, (now - startNanos) / TICK_NANOS);
+        }
+        long target = Math.max(currentTick, (now + delayNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS);
+        pack.rounds = (target - currentTick) / WHEEL_SIZE;
+        int slot = (int) (target & (WHEEL_SIZE - 1));
+        Pack head = wheel[slot];
+        pack.slot = slot;
+        pack.prev = null;
+        pack.next = head;
+        if (head != null) {
+            head.prev = pack;
+        }
+        wheel[slot] = pack;
+        size++;
+        if (!pack.mac.isEmpty() && !pack.tracked) {
+            pack.tracked = true;
+            pendingByMac.computeIfAbsent(pack.mac, k -> new ArrayList<>(2)).add(pack);
+        }
+    }
+
+    /**
+     * Cancels every pending copy addressed to the given MAC because the device answered, and records
+     * the round trip time of the latest command.
+     */
+    public void acknowledge(String mac, long now) {
+        List<Pack> packs = pendingByMac.get(mac);
+        if (packs != null && !packs.isEmpty()) {
+            metrics.recordRoundTrip(mac, now - packs.get(packs.size() - 1).firstSent);
+            cancel(mac);
+        }
+    }
+
+    /**
+     * Cancels every pending copy addressed to the given MAC.
+     *
+     * @return the number of packs that were cancelled
+     */
+    public int cancel(String mac) {
+        List<Pack> packs = pendingByMac.remove(mac);
+        if (packs == null) {
+            return 0;
+        }
+        for (Pack pack : packs) {
+            metrics.retransmitsCancelled.add(pack.remaining);
+            pack.tracked = false;
+            pack.remaining = 0;
+            unlink(pack);
+        }
+        return packs.size();
+    }
+
+    /**
+     * Moves all packs that are due at <code>now</code> into <code>due</code>.
+     */
+    public void expire(long now, Collection<Pack> due) {
+        while (size > 0 && now - (startNanos + currentTick * TICK_NANOS) >= 0) {
+            Pack pack = wheel[(int) (currentTick & (WHEEL_SIZE - 1))];
+            while (pack != null) {
+                Pack next = pack.next;
+                if (pack.rounds > 0) {
+                    pack.rounds--;
+                } else {
+                    unlink(pack);
+                    due.add(pack);
+                }
+                pack = next;
+            }
+            currentTick++;
+        }
+        if (size == 0) {
+            currentTick = Math.max(currentTick, (now - startNanos) / TICK_NANOS);
+        }
+    }
+
+    /**
+     * Forgets a pack that has sent its last copy.
+     */
+    public void done(Pack pack) {
+        if (pack.tracked) {
+            pack.tracked = false;
+            List<Pack> packs = pendingByMac.get(pack.mac);
+            if (packs != null) {
+                packs.remove(pack);
+                if (packs.isEmpty()) {
+                    pendingByMac.remove(pack.mac);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return nanoseconds until the next tick that has to be processed, or -1 if nothing is pending
+     */
+    public long nanosUntilNextTick(long now) {
+        return size == 0 ? -1 : Math.max(0, startNanos + currentTick * TICK_NANOS - now);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drops every pending copy, when the engine stops.
+     */
+    public void clear() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            Pack pack = wheel[i];
+            while (pack != null) {
+                Pack next = pack.next;
+                pack.prev = null;
+                pack.next = null;
+                pack.slot = -1;
+                pack.tracked = false;
+                pack.remaining = 0;
+                pack = next;
+            }
+            wheel[i] = null;
+        }
+        pendingByMac.clear();
+        size = 0;
+    }
+
+    private void unlink(Pack pack) {
+        if (pack.slot < 0) {
+            return;
+        }
+        Pack prev = pack.prev;
+        Pack next = pack.next;
+        if (prev != null) {
+            prev.next = next;
+        } else {
+            wheel[pack.slot] = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        pack.prev = null;
+        pack.next = null;
+        pack.slot = -1;
+        size--;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link SceneExecution} tracks a group of commands sent together by
+ * {@link MotionblindsMulticastManager#sendScene(String[], byte[][], int)}.
+ * <p>
+ * It records when the first copy of every command left the socket and when every device answered,
+ * so the spread between the first and the last motor shows how well the group moved together.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class SceneExecution {
+    private final String[] macs;
+    private final long[] sent;
+    private final long[] acknowledged;
+    private final CompletableFuture<SceneExecution> completion = new CompletableFuture<>();
+    private int pending;
+
+    SceneExecution(String[] macs) {
+        this.macs = macs.clone();
+        this.sent = new long[macs.length];
+        this.acknowledged = new long[macs.length];
+        this.pending = macs.length;
+        if (pending == 0) {
+            completion.complete(this);
+        }
+    }
+
+    synchronized void sent(int index, long now) {
+        sent[index] = now;
+    }
+
+    synchronized void acknowledged(int index, long now) {
+        if (acknowledged[index] == 0) {
+            acknowledged[index] = now;
+            pending--;
+        }
+        if (pending == 0) {
+            completion.complete(this);
+        }
+    }
+
+    /**
+     * Marks a command that was rejected or replaced, so the execution does not wait for it.
+     */
+    synchronized void abandoned(int index) {
+        if (acknowledged[index] == 0 && sent[index] >= 0) {
+            sent[index] = -1;
+            pending--;
+        }
+        if (pending == 0) {
+            completion.complete(this);
+        }
+    }
+
+    /**
+     * Completes when every device answered, or was abandoned.
+     */
+    public CompletableFuture<SceneExecution> getCompletion() {
+        return completion;
+    }
+
+    public int size() {
+        return macs.length;
+    }
+
+    public synchronized int getAcknowledged() {
+        int count = 0;
+        for (long time : acknowledged) {
+            if (time != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the devices that did not answer yet
+     */
+    public synchronized List<String> getMissing() {
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < macs.length; i++) {
+            if (acknowledged[i] == 0) {
+                missing.add(macs[i]);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @return nanoseconds between the first and the last command leaving the socket
+     */
+    public synchronized long getSendSpread() {
+        return spread(sent);
+    }
+
+    /**
+     * @return nanoseconds between the first and the last device answering
+     */
+    public synchronized long getAckSpread() {
+        return spread(acknowledged);
+    }
+
+    private static long spread(long[] times) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (long time : times) {
+            if (time > 0) {
+                first = Math.min(first, time);
+                last = Math.max(last, time);
+            }
+        }
+        return first <= last ? last - first : 0;
+    }
+
+    String getMac(int index) {
+        return macs[index];
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager.Pack;
+
+/**
+ * The {@link SendQueue} holds the packs waiting for their first transmission, in one lane per
+ * {@link Lane}.
+ * <p>
+ * A command addressed to a MAC supersedes a command for the same MAC that is still queued, so
+ * a burst of position updates only sends the latest target. Other requests are never
+ * coalesced. Every lane has its own capacity: a full interactive lane rejects the new pack and
+ * counts it, a full background lane drops its oldest pack, since a newer poll makes it useless.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class SendQueue {
+    /**
+     * The lanes in the order the event loop serves them. Retransmissions are served between the
+     * interactive and the background lane from the retransmit wheel.
+     */
+    public enum Lane {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Pack> interactive = new ArrayDeque<>();
+    private final ArrayDeque<Pack> background = new ArrayDeque<>();
+    private final Map<String, Pack> queuedByMac = new HashMap<>();
+    private final int interactiveCapacity;
+    private final int backgroundCapacity;
+    private int interactiveSize;
+    private int highWaterMark;
+    private long accepted;
+    private long coalesced;
+    private long rejected;
+    private long dropped;
+
+    public SendQueue(int interactiveCapacity, int backgroundCapacity) {
+        this.interactiveCapacity = interactiveCapacity;
+        this.backgroundCapacity = backgroundCapacity;
+    }
+
+    /**
+     * @return <code>false</code> if the lane of the pack is full and the pack was not accepted
+     */
+    public boolean offer(Pack pack) {
+        synchronized (lock) {
+            if (pack.lane == Lane.BACKGROUND) {
+                if (background.size() >= backgroundCapacity) {
+                    background.poll();
+                    dropped++;
+                }
+                background.add(pack);
+            } else {
+                Pack superseded = pack.coalesce ? queuedByMac.get(pack.mac) : null;
+                if (superseded != null) {
+                    superseded.superseded = true;
+                    interactiveSize--;
+                    coalesced++;
+                } else if (interactiveSize >= interactiveCapacity) {
+                    rejected++;
+                    return false;
+                }
+                if (interactive.size() >= 2 * interactiveCapacity) {
+                    interactive.removeIf(p -> p.superseded);
+                }
+                interactive.add(pack);
+                if (pack.coalesce) {
+                    queuedByMac.put(pack.mac, pack);
+                }
+                interactiveSize++;
+            }
+            accepted++;
+            int size = interactiveSize + background.size();
+            if (size > highWaterMark) {
+                highWaterMark = size;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the command queued for the MAC, when a newer one for it was queued elsewhere. Counted as
+     * coalesced.
+     *
+     * @return <code>false</code> if no command was queued for the MAC
+     */
+    public boolean supersede(String mac) {
+        synchronized (lock) {
+            Pack superseded = queuedByMac.remove(mac);
+            if (superseded == null) {
+                return false;
+            }
+            superseded.superseded = true;
+            interactiveSize--;
+            coalesced++;
+            return true;
+        }
+    }
+
+    public @Nullable Pack poll(Lane lane) {
+        synchronized (lock) {
+            if (lane == Lane.BACKGROUND) {
+                return background.poll();
+            }
+            Pack pack;
+            while ((pack = interactive.poll()) != null) {
+                if (!pack.superseded) {
+                    if (pack.coalesce) {
+                        queuedByMac.remove(pack.mac);
+                    }
+                    interactiveSize--;
+                    return pack;
+                }
+            }
+            return null;
+        }
+    }
+
+    public boolean isEmpty(Lane lane) {
+        synchronized (lock) {
+            return lane == Lane.BACKGROUND ? background.isEmpty() : interactiveSize == 0;
+        }
+    }
+
+    /**
+     * Drops every queued pack.
+     *
+     * @return the number of dropped packs
+     */
+    public int clear() {
+        synchronized (lock) {
+            int size = interactiveSize + background.size();
+            interactive.clear();
+            background.clear();
+            queuedByMac.clear();
+            interactiveSize = 0;
+            return size;
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return interactiveSize + background.size();
+        }
+    }
+
+    public int getHighWaterMark() {
+        synchronized (lock) {
+            return highWaterMark;
+        }
+    }
+
+    public int getCapacity() {
+        return interactiveCapacity + backgroundCapacity;
+    }
+
+    public long getAccepted() {
+        synchronized (lock) {
+            return accepted;
+        }
+    }
+
+    public long getCoalesced() {
+        synchronized (lock) {
+            return coalesced;
+        }
+    }
+
+    /**
+     * @return interactive packs rejected because their lane was full
+     */
+    public long getRejected() {
+        synchronized (lock) {
+            return rejected;
+        }
+    }
+
+    /**
+     * @return background packs dropped for newer ones because their lane was full
+     */
+    public long getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link SocketSupervisor} tracks the state of the multicast socket and decides how long the
+ * event loop waits before it opens the socket again.
+ * <p>
+ * The first reopen happens after a few milliseconds. Every further failure doubles the delay up to
+ * {@link #MAX_BACKOFF_NANOS}, with half of it randomized so several bindings do not retry in step.
+ * A socket that stayed open for {@link #STABLE_NANOS} resets the delay. Only the socket is reopened,
+ * queued requests and pending retransmissions survive the restart.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class SocketSupervisor {
+    public enum State {
+        STARTING,
+        RUNNING,
+        BACKOFF,
+        STOPPED
+    }
+
+    static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+    static final long STABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private volatile State state = State.STARTING;
+    private volatile int failures;
+    private long openedAt;
+
+    /**
+     * Called when the socket was opened.
+     */
+    void opened(long now) {
+        state = State.RUNNING;
+        openedAt = now;
+    }
+
+    /**
+     * Called when the socket failed.
+     *
+     * @return nanoseconds to wait before the socket is opened again
+     */
+    long failed(long now) {
+        int failures = this.failures;
+        if (state == State.RUNNING && now - openedAt >= STABLE_NANOS) {
+            failures = 0;
+        }
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(failures, 20));
+        this.failures = failures + 1;
+        state = State.BACKOFF;
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    void stopped() {
+        state = State.STOPPED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return failures since the socket was last stable
+     */
+    public int getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.dto;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CurtainMotor}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class CurtainMotorTest {
+    private final CurtainMotor motor = new CurtainMotor();
+
+    @Test
+    public void notMovingBeforeAnyReport() {
+        assertFalse(motor.isMoving());
+    }
+
+    @Test
+    public void movingWhileOpeningTowardsTarget() {
+        motor.update(report(0, 40, 100));
+        assertTrue(motor.isMoving());
+        motor.update(report(1, 60, 10));
+        assertTrue(motor.isMoving());
+    }
+
+    @Test
+    public void notMovingWhenStoppedBetweenPositions() {
+        motor.update(report(2, 40, 100));
+        assertFalse(motor.isMoving());
+    }
+
+    @Test
+    public void notMovingWithoutOperation() {
+        MotionblindsMessage message = new MotionblindsMessage();
+        message.reset();
+        message.setType(MotionblindsMessage.Type.HEARTBEAT);
+        message.set(MotionblindsMessage.CURRENT_POSITION, 40);
+        message.set(MotionblindsMessage.TARGET_POSITION, 100);
+        motor.update(message);
+        assertFalse(motor.isMoving());
+    }
+
+    @Test
+    public void notMovingWhenTargetReached() {
+        motor.update(report(0, 99, 100));
+        assertFalse(motor.isMoving());
+    }
+
+    @Test
+    public void unknownValuesBeforeAnyMessage() {
+        assertEquals(CurtainMotor.INITIAL_STATE, motor.getState());
+        assertEquals(CurtainMotor.INITIAL_SETTINGS, motor.getSettings());
+        assertEquals(-1, motor.getCurrentPosition());
+        assertEquals(-1, motor.getTargetPosition());
+        assertEquals(-1, motor.getCurrentAngle());
+        assertEquals(-1, motor.getCurrentPositionBottom());
+        assertEquals(-1, motor.getTargetPositionBottom());
+        assertEquals(-1, motor.getCurrentState());
+        assertEquals(-1, motor.getOperation());
+        assertEquals(-1, motor.getControlMode());
+        assertEquals(-1, motor.getSwitchMode());
+        assertEquals(-1, motor.getDirection());
+        assertEquals(0, motor.getRssi());
+        assertEquals(DeviceKind.UNKNOWN, motor.getKind());
+    }
+
+    @Test
+    public void packsHeartbeatValues() {
+        MotionblindsMessage message = report(2, 99, 100);
+        message.setType(MotionblindsMessage.Type.HEARTBEAT);
+        message.setDeviceType("22000000");
+        message.set(MotionblindsMessage.CURRENT_STATE, 3);
+        message.set(MotionblindsMessage.DIRECTION, 1);
+        message.set(MotionblindsMessage.SWITCH_MODE, 0);
+        message.set(MotionblindsMessage.CONTROL_MODE, 0);
+        message.set(MotionblindsMessage.RSSI, -52);
+        motor.update(message);
+
+        assertEquals(99, motor.getCurrentPosition());
+        assertEquals(100, motor.getTargetPosition());
+        assertEquals(3, motor.getCurrentState());
+        assertEquals(2, motor.getOperation());
+        assertEquals(1, motor.getDirection());
+        assertEquals(0, motor.getSwitchMode());
+        assertEquals(0, motor.getControlMode());
+        assertEquals(-52, motor.getRssi());
+        assertEquals("22000000", motor.getDeviceType());
+        // not reported, still unknown
+        assertEquals(-1, motor.getCurrentAngle());
+        assertEquals(DeviceKind.UNKNOWN, motor.getKind());
+    }
+
+    @Test
+    public void keepsTheSignOfTheRssi() {
+        for (int rssi : new int[] { -128, -100, -1, 0, 1, 127 }) {
+            MotionblindsMessage message = new MotionblindsMessage();
+            message.reset();
+            message.set(MotionblindsMessage.RSSI, rssi);
+            motor.update(message);
+            assertEquals(rssi, motor.getRssi());
+            assertEquals(rssi, CurtainMotor.rssi(motor.getState()));
+        }
+    }
+
+    @Test
+    public void packsTopDownBottomUpRails() {
+        MotionblindsMessage message = new MotionblindsMessage();
+        message.reset();
+        message.setType(MotionblindsMessage.Type.READ_DEVICE_ACK);
+        message.set(MotionblindsMessage.BLIND_TYPE, 9);
+        message.set(MotionblindsMessage.CURRENT_POSITION, 10);
+        message.set(MotionblindsMessage.TARGET_POSITION, 20);
+        message.set(MotionblindsMessage.CURRENT_POSITION_BOTTOM, 80);
+        message.set(MotionblindsMessage.TARGET_POSITION_BOTTOM, 90);
+        motor.update(message);
+
+        assertEquals(DeviceKind.TOP_DOWN_BOTTOM_UP, motor.getKind());
+        assertEquals(10, motor.getCurrentPosition());
+        assertEquals(20, motor.getTargetPosition());
+        assertEquals(80, motor.getCurrentPositionBottom());
+        assertEquals(90, motor.getTargetPositionBottom());
+        assertEquals(80, CurtainMotor.currentPositionBottom(motor.getState()));
+    }
+
+    @Test
+    public void packsTheAngleOfVenetianBlinds() {
+        for (int angle : new int[] { 0, 90, 180 }) {
+            MotionblindsMessage message = new MotionblindsMessage();
+            message.reset();
+            message.set(MotionblindsMessage.BLIND_TYPE, 2);
+            message.set(MotionblindsMessage.CURRENT_ANGLE, angle);
+            motor.update(message);
+            assertEquals(DeviceKind.VENETIAN, motor.getKind());
+            assertEquals(angle, motor.getCurrentAngle());
+            assertEquals(angle, CurtainMotor.currentAngle(motor.getState()));
+        }
+    }
+
+    @Test
+    public void storesOutOfRangeValuesAsUnknown() {
+        MotionblindsMessage message = new MotionblindsMessage();
+        message.reset();
+        message.set(MotionblindsMessage.CURRENT_POSITION, 255);
+        message.set(MotionblindsMessage.TARGET_POSITION, -3);
+        message.set(MotionblindsMessage.OPERATION, 15);
+        motor.update(message);
+        assertEquals(-1, motor.getCurrentPosition());
+        assertEquals(-1, motor.getTargetPosition());
+        assertEquals(-1, motor.getOperation());
+    }
+
+    @Test
+    public void valuesDoNotOverlap() {
+        MotionblindsMessage message = new MotionblindsMessage();
+        message.reset();
+        message.set(MotionblindsMessage.CURRENT_POSITION, 254);
+        message.set(MotionblindsMessage.TARGET_POSITION, 0);
+        message.set(MotionblindsMessage.CURRENT_ANGLE, 254);
+        message.set(MotionblindsMessage.CURRENT_POSITION_BOTTOM, 0);
+        message.set(MotionblindsMessage.TARGET_POSITION_BOTTOM, 254);
+        message.set(MotionblindsMessage.RSSI, -1);
+        message.set(MotionblindsMessage.CURRENT_STATE, 0);
+        message.set(MotionblindsMessage.OPERATION, 14);
+        message.set(MotionblindsMessage.BLIND_TYPE, 12);
+        motor.update(message);
+        assertEquals(254, motor.getCurrentPosition());
+        assertEquals(0, motor.getTargetPosition());
+        assertEquals(254, motor.getCurrentAngle());
+        assertEquals(0, motor.getCurrentPositionBottom());
+        assertEquals(254, motor.getTargetPositionBottom());
+        assertEquals(-1, motor.getRssi());
+        assertEquals(0, motor.getCurrentState());
+        assertEquals(14, motor.getOperation());
+        assertEquals(DeviceKind.CURTAIN, motor.getKind());
+    }
+
+    @Test
+    public void gatewaysKeepTheirKind() {
+        MotionblindsMessage message = new MotionblindsMessage();
+        message.reset();
+        message.setDeviceType("02000002");
+        message.set(MotionblindsMessage.BLIND_TYPE, 1);
+        motor.update(message);
+        assertTrue(motor.isGateway());
+        assertEquals(DeviceKind.GATEWAY, CurtainMotor.kind(motor.getState()));
+    }
+
+    @Test
+    public void restoresPackedStateAndSettings() {
+        motor.update(report(1, 30, 70));
+        CurtainMotor restored = new CurtainMotor();
+        restored.restore(motor.getState(), motor.getSettings());
+        assertEquals(30, restored.getCurrentPosition());
+        assertEquals(70, restored.getTargetPosition());
+        assertEquals(1, restored.getOperation());
+        assertEquals(motor.getState(), restored.getState());
+    }
+
+    static MotionblindsMessage report(int operation, int currentPosition, int targetPosition) {
+        MotionblindsMessage message = new MotionblindsMessage();
+        message.reset();
+        message.setType(MotionblindsMessage.Type.REPORT);
+        message.set(MotionblindsMessage.OPERATION, operation);
+        message.set(MotionblindsMessage.CURRENT_POSITION, currentPosition);
+        message.set(MotionblindsMessage.TARGET_POSITION, targetPosition);
+        return message;
+    }
+}
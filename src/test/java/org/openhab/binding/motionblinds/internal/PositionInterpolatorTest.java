@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PositionInterpolator}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class PositionInterpolatorTest {
+    private static final long START = 5_000_000_000L;
+
+    private final PositionInterpolator interpolator = new PositionInterpolator();
+
+    @Test
+    public void unknownUntilReported() {
+        assertEquals(-1, interpolator.predict(START));
+        assertFalse(interpolator.isMoving(START));
+        interpolator.commanded(50, START);
+        assertEquals(-1, interpolator.predict(START));
+    }
+
+    @Test
+    public void keepsPositionWhileStopped() {
+        interpolator.update(40, 100, false, START);
+        assertEquals(40, interpolator.predict(START + seconds(10)));
+        assertFalse(interpolator.isMoving(START + seconds(10)));
+    }
+
+    @Test
+    public void predictsWithDefaultSpeedAndStopsAtTarget() {
+        interpolator.update(40, 100, true, START);
+        // 300 ms per percent until the speed is learned
+        assertEquals(40, interpolator.predict(START + millis(299)));
+        assertEquals(50, interpolator.predict(START + seconds(3)));
+        assertTrue(interpolator.isMoving(START + seconds(3)));
+        assertEquals(100, interpolator.predict(START + seconds(60)));
+        assertFalse(interpolator.isMoving(START + seconds(60)));
+    }
+
+    @Test
+    public void predictsClosing() {
+        interpolator.update(80, 20, true, START);
+        assertEquals(70, interpolator.predict(START + seconds(3)));
+        assertEquals(20, interpolator.predict(START + seconds(60)));
+    }
+
+    @Test
+    public void learnsTheSpeedFromReports() {
+        interpolator.update(0, 100, true, START);
+        // 10 percent per second
+        interpolator.update(10, 100, true, START + seconds(1));
+        assertEquals(30, interpolator.predict(START + seconds(3)));
+        // a repeated position does not restart the prediction
+        interpolator.update(10, 100, true, START + seconds(2));
+        assertEquals(30, interpolator.predict(START + seconds(3)));
+    }
+
+    @Test
+    public void clampsTheLearnedSpeed() {
+        interpolator.update(0, 100, true, START);
+        // implausibly fast, clamped to 20 ms per percent
+        interpolator.update(50, 100, true, START + millis(1));
+        assertEquals(55, interpolator.predict(START + millis(1) + millis(100)));
+    }
+
+    @Test
+    public void commandStartsPredictionFromThePredictedPosition() {
+        interpolator.update(50, 50, false, START);
+        interpolator.commanded(80, START);
+        assertTrue(interpolator.isMoving(START + seconds(3)));
+        assertEquals(60, interpolator.predict(START + seconds(3)));
+
+        // stop halfway
+        interpolator.commanded(-1, START + seconds(3));
+        assertFalse(interpolator.isMoving(START + seconds(4)));
+        assertEquals(60, interpolator.predict(START + seconds(10)));
+    }
+
+    @Test
+    public void reportReplacesThePrediction() {
+        interpolator.update(0, 100, true, START);
+        interpolator.update(5, 100, false, START + seconds(1));
+        assertEquals(5, interpolator.predict(START + seconds(30)));
+        assertFalse(interpolator.isMoving(START + seconds(30)));
+    }
+
+    @Test
+    public void resetForgetsThePosition() {
+        interpolator.update(30, 60, true, START);
+        interpolator.reset();
+        assertEquals(-1, interpolator.predict(START + seconds(1)));
+        assertFalse(interpolator.isMoving(START + seconds(1)));
+    }
+
+    private static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
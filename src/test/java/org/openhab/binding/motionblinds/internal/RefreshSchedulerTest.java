@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.multicast.MotionblindsCommandEncoder;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager;
+import org.openhab.core.net.NetworkAddressService;
+
+/**
+ * Tests for {@link RefreshScheduler}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class RefreshSchedulerTest {
+    private static final int MOTORS = 30;
+
+    private final MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(
+            mock(NetworkAddressService.class));
+    private final RefreshScheduler scheduler = new RefreshScheduler(mcm, new MotionblindsCommandEncoder());
+
+    @Test
+    public void spreadsFirstPollsOverTicks() {
+        for (int i = 0; i < MOTORS; i++) {
+            mcm.getDeviceRegistry().getOrCreate(String.format("f0fe6b0d%08x", i)).setDeviceType("10000000");
+        }
+        scheduler.tick();
+        assertEquals(RefreshScheduler.POLLS_PER_TICK, mcm.getSendQueue().size());
+        scheduler.tick();
+        assertEquals(2 * RefreshScheduler.POLLS_PER_TICK, mcm.getSendQueue().size());
+        scheduler.tick();
+        assertEquals(MOTORS, mcm.getSendQueue().size());
+        // every motor was polled once and waits for its idle interval
+        scheduler.tick();
+        assertEquals(MOTORS, mcm.getSendQueue().size());
+    }
+
+    @Test
+    public void forgetsMotorsThatLeftTheRegistry() {
+        mcm.getDeviceRegistry().getOrCreate("f0fe6b0d00000001").setDeviceType("10000000");
+        scheduler.tick();
+        assertEquals(1, scheduler.size());
+        mcm.getDeviceRegistry().clear();
+        scheduler.tick();
+        assertEquals(0, scheduler.size());
+    }
+}
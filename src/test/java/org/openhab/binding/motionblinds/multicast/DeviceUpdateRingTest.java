@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage.Type;
+
+/**
+ * Tests for {@link DeviceUpdateRing}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class DeviceUpdateRingTest {
+    private final List<String> delivered = new ArrayList<>();
+    private final DeviceUpdateListener recorder = (motor, type) -> delivered.add(motor.getMac() + " " + type);
+
+    @Test
+    public void roundsCapacityToPowerOfTwo() {
+        assertEquals(2, new DeviceUpdateRing(1, 0).getCapacity());
+        assertEquals(8, new DeviceUpdateRing(5, 0).getCapacity());
+        assertEquals(8, new DeviceUpdateRing(8, 0).getCapacity());
+    }
+
+    @Test
+    public void deliversInOrder() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(4, 4);
+        CurtainMotor a = motor("aa");
+        CurtainMotor b = motor("bb");
+        assertTrue(ring.publish(a, Type.REPORT));
+        assertTrue(ring.publish(b, Type.HEARTBEAT));
+        assertEquals(2, ring.size());
+
+        assertEquals(2, ring.drain(recorder));
+        assertEquals(List.of("aa REPORT", "bb HEARTBEAT"), delivered);
+        assertTrue(ring.isEmpty());
+        assertEquals(2, ring.getPublished());
+        assertEquals(2, ring.getHighWaterMark());
+    }
+
+    @Test
+    public void coalescesUpdatesOfWaitingMotor() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(4, 4);
+        CurtainMotor a = motor("aa");
+        assertTrue(ring.publish(a, Type.HEARTBEAT));
+        assertTrue(ring.publish(a, Type.HEARTBEAT));
+        assertTrue(ring.publish(a, Type.HEARTBEAT));
+        assertEquals(1, ring.size());
+        assertEquals(2, ring.getCoalesced());
+
+        ring.drain(recorder);
+        // delivered, so the next Heartbeat takes a slot again
+        assertTrue(ring.publish(a, Type.HEARTBEAT));
+        assertEquals(1, ring.size());
+        assertEquals(2, ring.getCoalesced());
+    }
+
+    @Test
+    public void dropsHeartbeatsWhenFull() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(2, 4);
+        CurtainMotor c = motor("cc");
+        assertTrue(ring.publish(motor("aa"), Type.HEARTBEAT));
+        assertTrue(ring.publish(motor("bb"), Type.HEARTBEAT));
+        assertFalse(ring.publish(c, Type.HEARTBEAT));
+        assertEquals(1, ring.getHeartbeatsDropped());
+
+        ring.drain(recorder);
+        // the dropped Heartbeat did not leave the motor marked as pending
+        assertTrue(ring.publish(c, Type.HEARTBEAT));
+        ring.drain(recorder);
+        assertEquals(List.of("aa HEARTBEAT", "bb HEARTBEAT", "cc HEARTBEAT"), delivered);
+    }
+
+    @Test
+    public void defersReportsWhenFull() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(2, 4);
+        assertTrue(ring.publish(motor("aa"), Type.REPORT));
+        assertTrue(ring.publish(motor("bb"), Type.REPORT));
+        assertTrue(ring.publish(motor("cc"), Type.WRITE_DEVICE_ACK));
+        assertTrue(ring.publish(motor("dd"), Type.REPORT));
+        assertEquals(2, ring.getOverflowSize());
+        assertEquals(2, ring.getDeferred());
+
+        ring.drain(recorder);
+        assertTrue(ring.flushOverflow());
+        assertEquals(0, ring.getOverflowSize());
+        // a later report waits behind the deferred ones
+        assertTrue(ring.publish(motor("ee"), Type.READ_DEVICE_ACK));
+        ring.drain(recorder);
+        ring.flushOverflow();
+        ring.drain(recorder);
+        assertEquals(List.of("aa REPORT", "bb REPORT", "cc WRITE_DEVICE_ACK", "dd REPORT", "ee READ_DEVICE_ACK"),
+                delivered);
+    }
+
+    @Test
+    public void mergesTypesOfWaitingMotor() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(4, 4);
+        CurtainMotor a = motor("aa");
+        assertTrue(ring.publish(a, Type.REPORT));
+        assertTrue(ring.publish(a, Type.HEARTBEAT));
+        assertTrue(ring.publish(a, Type.REPORT));
+        assertEquals(1, ring.size());
+        assertEquals(2, ring.getCoalesced());
+
+        // every waiting type once, in the order of the types
+        assertEquals(2, ring.drain(recorder));
+        assertEquals(List.of("aa HEARTBEAT", "aa REPORT"), delivered);
+    }
+
+    @Test
+    public void boundsTheOverflow() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(2, 1);
+        CurtainMotor d = motor("dd");
+        assertTrue(ring.publish(motor("aa"), Type.REPORT));
+        assertTrue(ring.publish(motor("bb"), Type.REPORT));
+        assertTrue(ring.publish(motor("cc"), Type.REPORT));
+        assertFalse(ring.publish(d, Type.REPORT));
+        assertEquals(1, ring.getOverflowSize());
+        assertEquals(1, ring.getOverflowDropped());
+
+        ring.drain(recorder);
+        ring.flushOverflow();
+        // the dropped update did not leave the motor marked as waiting
+        assertTrue(ring.publish(d, Type.REPORT));
+        ring.drain(recorder);
+        assertEquals(List.of("aa REPORT", "bb REPORT", "cc REPORT", "dd REPORT"), delivered);
+    }
+
+    @Test
+    public void defersHeartbeatsWithDeferAllPolicy() {
+        DeviceUpdateRing ring = new DeviceUpdateRing(2, 4);
+        ring.setPolicy(OverloadPolicy.DEFER_ALL);
+        assertTrue(ring.publish(motor("aa"), Type.HEARTBEAT));
+        assertTrue(ring.publish(motor("bb"), Type.HEARTBEAT));
+        assertTrue(ring.publish(motor("cc"), Type.HEARTBEAT));
+        assertEquals(0, ring.getHeartbeatsDropped());
+        assertEquals(1, ring.getDeferred());
+
+        ring.drain(recorder);
+        ring.flushOverflow();
+        ring.drain(recorder);
+        assertEquals(List.of("aa HEARTBEAT", "bb HEARTBEAT", "cc HEARTBEAT"), delivered);
+    }
+
+    @Test
+    public void parsesPolicies() {
+        assertEquals(OverloadPolicy.DEFER_ALL, OverloadPolicy.parse(" defer_all "));
+        assertEquals(OverloadPolicy.DROP_HEARTBEATS, OverloadPolicy.parse("unknown"));
+        assertEquals(OverloadPolicy.DROP_HEARTBEATS, OverloadPolicy.parse(null));
+    }
+
+    @Test
+    public void deliversTheLatestReportBetweenThreads() throws InterruptedException {
+        int count = 20_000;
+        DeviceUpdateRing ring = new DeviceUpdateRing(16, 16);
+        CurtainMotor[] motors = { motor("aa"), motor("bb"), motor("cc") };
+        AtomicLongArray lastPublished = new AtomicLongArray(motors.length);
+        AtomicLongArray lastDelivered = new AtomicLongArray(motors.length);
+        AtomicBoolean done = new AtomicBoolean();
+        long[] received = new long[1];
+        Thread consumer = new Thread(() -> {
+            DeviceUpdateListener listener = (motor, type) -> {
+                for (int m = 0; m < motors.length; m++) {
+                    if (motors[m] == motor) {
+                        lastDelivered.set(m, lastPublished.get(m));
+                    }
+                }
+                received[0]++;
+            };
+            while (!done.get() || !ring.isEmpty()) {
+                if (ring.drain(listener) == 0) {
+                    Thread.yield();
+                }
+            }
+        });
+        consumer.start();
+        for (int i = 1; i <= count; i++) {
+            int m = i % motors.length;
+            lastPublished.set(m, i);
+            assertTrue(ring.publish(motors[m], Type.REPORT));
+            if (ring.getOverflowSize() > 0) {
+                // let the consumer catch up on machines with a single core
+                Thread.yield();
+            }
+        }
+        while (!ring.flushOverflow()) {
+            Thread.yield();
+        }
+        done.set(true);
+        consumer.join(10_000);
+
+        assertFalse(consumer.isAlive());
+        for (int m = 0; m < motors.length; m++) {
+            assertEquals(lastPublished.get(m), lastDelivered.get(m));
+        }
+        assertEquals(count, ring.getPublished() + ring.getCoalesced());
+        assertEquals(ring.getPublished(), received[0]);
+        assertTrue(ring.getHighWaterMark() <= ring.getCapacity());
+    }
+
+    private static CurtainMotor motor(String mac) {
+        CurtainMotor motor = new CurtainMotor();
+        motor.setMac(mac);
+        return motor;
+    }
+}
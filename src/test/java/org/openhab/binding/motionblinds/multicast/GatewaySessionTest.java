@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link GatewaySession} and the grouping of devices by gateway.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class GatewaySessionTest {
+    private static final int TARGET_PORT = 32100;
+
+    private final GatewaySession session = new GatewaySession("f0fe6b0d0000", TARGET_PORT);
+
+    @Test
+    public void unknownUntilSeen() {
+        assertNull(session.getAddress());
+        assertEquals("", session.getToken());
+        assertEquals(0, session.getLastSeen());
+    }
+
+    @Test
+    public void learnsAddressAndToken() throws UnknownHostException {
+        InetAddress gateway = InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 20 });
+        session.seen(gateway, "37412C478E0FBEAB", null, 100);
+
+        assertEquals(new InetSocketAddress(gateway, TARGET_PORT), session.getAddress());
+        assertEquals("37412C478E0FBEAB", session.getToken());
+        assertEquals(100, session.getLastSeen());
+        assertNull(session.getVia());
+    }
+
+    @Test
+    public void keepsAddressAndTokenUnlessChanged() throws UnknownHostException {
+        InetAddress gateway = InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 20 });
+        session.seen(gateway, "AAAA", null, 100);
+        InetSocketAddress address = session.getAddress();
+
+        // messages of devices carry no token
+        session.seen(InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 20 }), "", null, 200);
+        assertSame(address, session.getAddress());
+        assertEquals("AAAA", session.getToken());
+        assertEquals(200, session.getLastSeen());
+
+        InetAddress moved = InetAddress.getByAddress(new byte[] { (byte) 192, (byte) 168, 1, 21 });
+        session.seen(moved, "BBBB", null, 300);
+        assertEquals(new InetSocketAddress(moved, TARGET_PORT), session.getAddress());
+        assertEquals("BBBB", session.getToken());
+    }
+
+    @Test
+    public void groupsDevicesByGateway() {
+        assertEquals("f0fe6b0d0000", MotionblindsDeviceRegistry.gatewayMacOf("f0fe6b0d00000001"));
+        // Wi-Fi motors are their own gateway
+        assertEquals("483fda1eb16e", MotionblindsDeviceRegistry.gatewayMacOf("483fda1eb16e"));
+
+        MotionblindsDeviceRegistry registry = new MotionblindsDeviceRegistry();
+        registry.getOrCreate("f0fe6b0d00000001");
+        registry.getOrCreate("f0fe6b0d00000002");
+        registry.getOrCreate("f0fe6b0d11110001");
+        assertEquals(2, registry.getMotorsOfGateway("f0fe6b0d0000").size());
+        assertEquals(1, registry.getMotorsOfGateway("f0fe6b0d1111").size());
+        assertEquals(0, registry.getMotorsOfGateway("000000000000").size());
+        assertEquals("f0fe6b0d0000", registry.getOrCreate("f0fe6b0d00000001").getGatewayMac());
+    }
+}
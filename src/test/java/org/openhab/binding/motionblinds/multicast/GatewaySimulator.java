@@ -0,0 +1,383 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+
+/**
+ * Motion gateways with their motors behind one socket on an ephemeral loopback port, to run the
+ * {@link MotionblindsMulticastManager} without hardware. Every gateway sends a <code>Heartbeat</code>
+ * periodically. A <code>WriteDevice</code> request is answered with a <code>WriteDeviceAck</code> while the
+ * motor starts moving at the configured speed, and a <code>Report</code> is sent when it reaches its target.
+ * <code>ReadDevice</code> requests are answered with the current position.
+ * <p>
+ * The first copy of some requests is lost and some answers are sent after the answer for another motor. A
+ * first copy is only lost while no answer for the motor was sent recently: the Motion protocol does not say
+ * which request an answer belongs to, so a late answer also cancels the copies of a newer request.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class GatewaySimulator implements Closeable {
+    static final String GATEWAY_TYPE = "02000002";
+    static final String MOTOR_TYPE = "10000000";
+    static final String TOKEN = "0123456789ABCDEF";
+
+    private static final int OPERATION_CLOSE = 0;
+    private static final int OPERATION_OPEN = 1;
+    private static final int OPERATION_STOP = 2;
+    private static final int POLL_MILLIS = 5;
+    // room for a burst to a few hundred motors, the kernel may grant less
+    private static final int RECEIVE_BUFFER_SIZE = 1 << 20;
+    private static final long ANSWER_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(750);
+
+    private final Map<String, List<String>> gateways = new LinkedHashMap<>();
+    private final Map<String, Motor> motors = new HashMap<>();
+    private final long nanosPerPercent;
+    private final long heartbeatNanos;
+    private final double lossRate;
+    private final double reorderRate;
+    private final Random random;
+    private final DatagramSocket socket;
+    private final Thread thread;
+    private volatile @Nullable InetSocketAddress manager;
+
+    private final MotionblindsMessageDecoder decoder = new MotionblindsMessageDecoder();
+    private final MotionblindsMessage message = new MotionblindsMessage();
+    // only used by the simulator thread
+    private final Set<String> requests = new HashSet<>();
+    private final List<Motor> moving = new ArrayList<>();
+    private long nextHeartbeat;
+    private @Nullable DatagramPacket held;
+    private String heldMac = "";
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicInteger different = new AtomicInteger();
+    private final AtomicInteger lost = new AtomicInteger();
+    private final AtomicInteger reordered = new AtomicInteger();
+    private final AtomicInteger heartbeats = new AtomicInteger();
+    private final AtomicInteger reports = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param gateways the number of gateways, with MACs <code>f0fe6b0d0001</code> and up
+     * @param motorsPerGateway the number of motors of every gateway, with the MAC of their gateway followed by
+     *            a number
+     * @param millisPerPercent the time a motor takes to move by one percent
+     * @param heartbeatMillis the interval of the <code>Heartbeat</code> of every gateway
+     * @param seed the seed of the losses and swaps
+     * @param lossRate the share of first copies lost
+     * @param reorderRate the share of answers held back until the next answer
+     */
+    public GatewaySimulator(int gateways, int motorsPerGateway, long millisPerPercent, long heartbeatMillis,
+            long seed, double lossRate, double reorderRate) throws IOException {
+        for (int i = 1; i <= gateways; i++) {
+            String gatewayMac = String.format("f0fe6b0d%04x", i);
+            List<String> motorMacs = new ArrayList<>();
+            for (int j = 1; j <= motorsPerGateway; j++) {
+                String motorMac = String.format("%s%04x", gatewayMac, j);
+                motorMacs.add(motorMac);
+                motors.put(motorMac, new Motor(motorMac));
+            }
+            this.gateways.put(gatewayMac, motorMacs);
+        }
+        this.nanosPerPercent = TimeUnit.MILLISECONDS.toNanos(millisPerPercent);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        this.lossRate = lossRate;
+        this.reorderRate = reorderRate;
+        this.random = new Random(seed);
+        socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        socket.setSoTimeout(POLL_MILLIS);
+        socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        thread = new Thread(this::run, "motionblinds-simulator");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * @return the port the gateways receive requests on
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Starts sending <code>Heartbeat</code>s and answering requests.
+     *
+     * @param manager the address the manager receives on
+     */
+    public void start(InetSocketAddress manager) {
+        this.manager = manager;
+        thread.start();
+    }
+
+    public Set<String> getGatewayMacs() {
+        return gateways.keySet();
+    }
+
+    public List<String> getMotorMacs(String gatewayMac) {
+        List<String> motorMacs = gateways.get(gatewayMac);
+        return motorMacs != null ? motorMacs : List.of();
+    }
+
+    /**
+     * @return the position the motor is at, -1 while it moves
+     */
+    public int getPosition(String motorMac) {
+        Motor motor = motors.get(motorMac);
+        return motor != null && motor.target == motor.position ? motor.position : -1;
+    }
+
+    /**
+     * @return the <code>WriteDevice</code> datagrams received, including lost ones
+     */
+    public int getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return the different <code>WriteDevice</code> requests received
+     */
+    public int getRequests() {
+        return different.get();
+    }
+
+    public int getLost() {
+        return lost.get();
+    }
+
+    public int getReordered() {
+        return reordered.get();
+    }
+
+    public int getHeartbeats() {
+        return heartbeats.get();
+    }
+
+    public int getReports() {
+        return reports.get();
+    }
+
+    /**
+     * Sends the device list of every gateway to the manager, as gateways answer a
+     * <code>GetDeviceList</code>.
+     */
+    public void announce() throws IOException {
+        InetSocketAddress manager = this.manager;
+        if (manager == null) {
+            throw new IllegalStateException("Simulator not started");
+        }
+        for (Map.Entry<String, List<String>> gateway : gateways.entrySet()) {
+            String gatewayMac = gateway.getKey();
+            StringBuilder list = new StringBuilder("{\"msgType\":\"GetDeviceListAck\",\"mac\":\"").append(gatewayMac)
+                    .append("\",\"deviceType\":\"").append(GATEWAY_TYPE).append("\",\"token\":\"").append(TOKEN)
+                    .append("\",\"data\":[{\"mac\":\"").append(gatewayMac).append("\",\"deviceType\":\"")
+                    .append(GATEWAY_TYPE).append("\"}");
+            for (String motorMac : gateway.getValue()) {
+                list.append(",{\"mac\":\"").append(motorMac).append("\",\"deviceType\":\"").append(MOTOR_TYPE)
+                        .append("\"}");
+            }
+            send(list.append("]}").toString(), manager);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        byte[] buffer = new byte[2048];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        nextHeartbeat = System.nanoTime();
+        while (!closed) {
+            try {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                    handle(packet, System.nanoTime());
+                } catch (SocketTimeoutException e) {
+                    sendHeld();
+                }
+                advance(System.nanoTime());
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends the due <code>Heartbeat</code>s and moves the motors, reporting the ones that arrived.
+     */
+    private void advance(long now) throws IOException {
+        InetSocketAddress manager = this.manager;
+        if (manager != null && now - nextHeartbeat >= 0) {
+            nextHeartbeat = now + heartbeatNanos;
+            for (Map.Entry<String, List<String>> gateway : gateways.entrySet()) {
+                send("{\"msgType\":\"Heartbeat\",\"mac\":\"" + gateway.getKey() + "\",\"deviceType\":\""
+                        + GATEWAY_TYPE + "\",\"token\":\"" + TOKEN + "\",\"data\":{\"currentState\":2,"
+                        + "\"numberOfDevices\":" + gateway.getValue().size() + ",\"RSSI\":-40}}", manager);
+                heartbeats.incrementAndGet();
+            }
+        }
+        for (int i = moving.size() - 1; i >= 0; i--) {
+            Motor motor = moving.get(i);
+            motor.move(now);
+            if (motor.position == motor.target && manager != null) {
+                moving.remove(i);
+                answer("Report", motor, manager);
+                reports.incrementAndGet();
+            }
+        }
+    }
+
+    private void handle(DatagramPacket packet, long now) throws IOException {
+        // requests decode as unknown messages, only their MAC and fields are read
+        String payload = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
+        if (!decoder.decode(ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()), message)) {
+            return;
+        }
+        Motor motor = motors.get(message.getMac());
+        if (motor == null) {
+            return;
+        }
+        if (payload.contains("\"ReadDevice\"")) {
+            motor.move(now);
+            answer("ReadDeviceAck", motor, packet.getSocketAddress());
+            return;
+        }
+        if (!payload.contains("\"WriteDevice\"") || !message.has(MotionblindsMessage.TARGET_POSITION)) {
+            return;
+        }
+        received.incrementAndGet();
+        boolean first = requests.add(payload);
+        if (first) {
+            different.incrementAndGet();
+        }
+        if (first && (motor.answered == 0 || now - motor.answered > ANSWER_GRACE_NANOS)
+                && random.nextDouble() < lossRate) {
+            lost.incrementAndGet();
+            return;
+        }
+        motor.moveTo(message.getTargetPosition(), now);
+        if (motor.position != motor.target && !moving.contains(motor)) {
+            moving.add(motor);
+        }
+        motor.answered = now;
+        answer("WriteDeviceAck", motor, packet.getSocketAddress());
+    }
+
+    private void answer(String msgType, Motor motor, SocketAddress to) throws IOException {
+        byte[] bytes = ("{\"msgType\":\"" + msgType + "\",\"mac\":\"" + motor.mac + "\",\"deviceType\":\""
+                + MOTOR_TYPE + "\",\"data\":{\"type\":1,\"operation\":" + motor.operation() + ",\"currentPosition\":"
+                + motor.position + ",\"targetPosition\":" + motor.target + ",\"RSSI\":-60}}")
+                .getBytes(StandardCharsets.UTF_8);
+        DatagramPacket answer = new DatagramPacket(bytes, bytes.length, to);
+        DatagramPacket previous = held;
+        if (previous == null) {
+            if (random.nextDouble() < reorderRate) {
+                held = answer;
+                heldMac = motor.mac;
+            } else {
+                socket.send(answer);
+            }
+        } else if (heldMac.equals(motor.mac)) {
+            // answers for the same motor keep their order
+            sendHeld();
+            socket.send(answer);
+        } else {
+            socket.send(answer);
+            sendHeld();
+            reordered.incrementAndGet();
+        }
+    }
+
+    private void sendHeld() {
+        DatagramPacket previous = held;
+        if (previous != null) {
+            held = null;
+            try {
+                socket.send(previous);
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void send(String json, SocketAddress to) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        socket.send(new DatagramPacket(bytes, bytes.length, to));
+    }
+
+    /**
+     * A motor moving at constant speed, written by the simulator thread only.
+     */
+    private class Motor {
+        final String mac;
+        volatile int position;
+        volatile int target;
+        int start;
+        long startedAt;
+        long answered;
+
+        Motor(String mac) {
+            this.mac = mac;
+        }
+
+        void moveTo(int target, long now) {
+            move(now);
+            if (target != this.target) {
+                start = position;
+                startedAt = now;
+                this.target = target;
+            }
+        }
+
+        void move(long now) {
+            int travelled = (int) Math.min(Math.abs(target - start), (now - startedAt) / nanosPerPercent);
+            position = start + Integer.signum(target - start) * travelled;
+        }
+
+        int operation() {
+            return position == target ? OPERATION_STOP : target > position ? OPERATION_CLOSE : OPERATION_OPEN;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+import org.openhab.core.net.NetworkAddressService;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Checks that the receive path does not allocate for messages of known devices: decoding into a reused
+ * message, updating the motor, acknowledging pending retransmissions and publishing to the update ring.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsMessageDecoderAllocationTest {
+    private static final int DEVICES = 16;
+    private static final int WARM_UP = 50_000;
+    private static final int MEASURED = 100_000;
+    // the allocation counter may see a few objects of the JIT or the counter itself
+    private static final long NOISE_BYTES = 256;
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final MotionblindsMessageDecoder decoder = new MotionblindsMessageDecoder();
+    private final MotionblindsMessage message = new MotionblindsMessage();
+
+    @Test
+    public void decodingHeartbeatsAllocatesNothingAfterWarmUp() {
+        ByteBuffer[] datagrams = datagrams("{\"msgType\":\"Heartbeat\",\"mac\":\"483fda1eb1%02x\",\"deviceType\":"
+                + "\"10000000\",\"token\":\"37412C478E0FBEAB\",\"data\":{\"operation\":2,\"direction\":1,"
+                + "\"currentPosition\":%d,\"targetPosition\":100,\"currentState\":3,\"switchMode\":0,"
+                + "\"controlMode\":0,\"RSSI\":-52}}");
+
+        int checksum = decode(datagrams, WARM_UP);
+        long allocated = allocated(() -> assertEquals(MEASURED / DEVICES * (DEVICES - 1) * DEVICES / 2,
+                decode(datagrams, MEASURED)));
+
+        assertEquals(WARM_UP / DEVICES * (DEVICES - 1) * DEVICES / 2, checksum);
+        assertTrue(allocated <= NOISE_BYTES, allocated + " bytes allocated for " + MEASURED + " messages");
+    }
+
+    @Test
+    public void receivePathAllocatesNothingAfterWarmUp() {
+        ByteBuffer[] heartbeats = datagrams("{\"msgType\":\"Heartbeat\",\"mac\":\"f0fe6b0d000000%02x\","
+                + "\"deviceType\":\"10000000\",\"data\":{\"operation\":2,\"currentPosition\":%d,"
+                + "\"targetPosition\":100,\"currentState\":2,\"RSSI\":-52}}");
+        ByteBuffer[] reports = datagrams("{\"msgType\":\"Report\",\"mac\":\"f0fe6b0d000000%02x\","
+                + "\"deviceType\":\"10000000\",\"data\":{\"type\":1,\"operation\":2,\"currentPosition\":%d,"
+                + "\"currentState\":2,\"RSSI\":-68}}");
+        MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(mock(NetworkAddressService.class));
+        int[] delivered = new int[1];
+        DeviceUpdateListener listener = (motor, type) -> delivered[0]++;
+        mcm.addDeviceUpdateListener(listener);
+        Runnable receive = () -> {
+            for (int i = 0; i < MEASURED; i++) {
+                ByteBuffer[] datagrams = (i & DEVICES) == 0 ? heartbeats : reports;
+                if (!decoder.decode(datagrams[i % DEVICES], message)) {
+                    fail("message not decoded");
+                }
+                // Reports acknowledge pending retransmissions of the device
+                mcm.dealWithData(message);
+                mcm.getUpdateRing().drain(listener);
+            }
+        };
+
+        // until the event loop code is compiled
+        for (int i = 0; i < 3; i++) {
+            receive.run();
+        }
+        delivered[0] = 0;
+        long allocated = allocated(receive);
+
+        assertEquals(MEASURED, delivered[0]);
+        assertEquals(DEVICES, mcm.getDeviceRegistry().size());
+        assertTrue(allocated <= NOISE_BYTES, allocated + " bytes allocated for " + MEASURED + " messages");
+    }
+
+    private long allocated(Runnable runnable) {
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private int decode(ByteBuffer[] datagrams, int count) {
+        int checksum = 0;
+        for (int i = 0; i < count; i++) {
+            if (!decoder.decode(datagrams[i % datagrams.length], message)
+                    || message.getType() != MotionblindsMessage.Type.HEARTBEAT) {
+                fail("Heartbeat not decoded");
+            }
+            checksum += message.getCurrentPosition();
+        }
+        return checksum;
+    }
+
+    private static ByteBuffer[] datagrams(String template) {
+        ByteBuffer[] datagrams = new ByteBuffer[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            byte[] bytes = String.format(template, i, i).getBytes(StandardCharsets.US_ASCII);
+            datagrams[i] = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+        return datagrams;
+    }
+}
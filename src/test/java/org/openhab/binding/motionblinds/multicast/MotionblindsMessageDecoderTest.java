@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+
+/**
+ * Tests for {@link MotionblindsMessageDecoder}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MotionblindsMessageDecoderTest {
+    private static final String HEARTBEAT = "{\"msgType\":\"Heartbeat\",\"mac\":\"483fda1eb16e\",\"deviceType\":"
+            + "\"22000000\",\"token\":\"37412C478E0FBEAB\",\"data\":{\"operation\":2,\"direction\":1,"
+            + "\"currentPosition\":99,\"targetPosition\":100,\"currentState\":3,\"switchMode\":0,"
+            + "\"controlMode\":0,\"RSSI\":-52}}";
+
+    private final MotionblindsMessageDecoder decoder = new MotionblindsMessageDecoder();
+    private final MotionblindsMessage message = new MotionblindsMessage();
+
+    @Test
+    public void decodesHeartbeat() {
+        assertTrue(decode(HEARTBEAT));
+        assertEquals(MotionblindsMessage.Type.HEARTBEAT, message.getType());
+        assertEquals("483fda1eb16e", message.getMac());
+        assertEquals("22000000", message.getDeviceType());
+        assertEquals("37412C478E0FBEAB", message.getToken());
+        assertEquals(2, message.getOperation());
+        assertEquals(1, message.getDirection());
+        assertEquals(99, message.getCurrentPosition());
+        assertEquals(100, message.getTargetPosition());
+        assertEquals(3, message.getCurrentState());
+        assertEquals(0, message.getSwitchMode());
+        assertEquals(0, message.getControlMode());
+        assertEquals(-52, message.getRssi());
+        assertFalse(message.has(MotionblindsMessage.CURRENT_ANGLE));
+    }
+
+    @Test
+    public void returnsCachedStrings() {
+        assertTrue(decode(HEARTBEAT));
+        String mac = message.getMac();
+        assertTrue(decode(HEARTBEAT));
+        assertSame(mac, message.getMac());
+    }
+
+    @Test
+    public void skipsUnknownKeysAndValues() {
+        assertTrue(decode("{ \"msgType\" : \"Report\", \"extra\": {\"a\": [1, {\"b\": \"}\"}]}, \"mac\": \"aa\","
+                + " \"data\": {\"unknown\": \"x\", \"currentAngle\": 90, \"currentPosition\": 12.5e0,"
+                + " \"RSSI\": \"strong\"}, \"tail\": true }"));
+        assertEquals(MotionblindsMessage.Type.REPORT, message.getType());
+        assertEquals("aa", message.getMac());
+        assertEquals(90, message.getCurrentAngle());
+        assertEquals(12, message.getCurrentPosition());
+        assertFalse(message.has(MotionblindsMessage.RSSI));
+    }
+
+    @Test
+    public void mapsTopAndBottomRails() {
+        assertTrue(decode("{\"msgType\":\"ReadDeviceAck\",\"mac\":\"bb\",\"data\":{\"type\":9,"
+                + "\"currentPosition_T\":10,\"targetPosition_T\":20,\"currentPosition_B\":80,"
+                + "\"targetPosition_B\":90}}"));
+        assertEquals(MotionblindsMessage.Type.READ_DEVICE_ACK, message.getType());
+        assertEquals(9, message.getBlindType());
+        assertEquals(10, message.getCurrentPosition());
+        assertEquals(20, message.getTargetPosition());
+        assertEquals(80, message.getCurrentPositionBottom());
+        assertEquals(90, message.getTargetPositionBottom());
+    }
+
+    @Test
+    public void decodesDeviceList() {
+        StringBuilder json = new StringBuilder("{\"msgType\":\"GetDeviceListAck\",\"mac\":\"f0fe6b0d0000\","
+                + "\"deviceType\":\"02000002\",\"ProtocolVersion\":\"0.9\",\"token\":\"AB\",\"data\":[");
+        for (int i = 0; i < 10; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"mac\":\"f0fe6b0d00").append(i).append("0\",\"deviceType\":\"")
+                    .append(i == 0 ? "02000002" : "10000000").append("\"}");
+        }
+        json.append(",{\"deviceType\":\"10000000\"}]}");
+        assertTrue(decode(json.toString()));
+        assertEquals(MotionblindsMessage.Type.GET_DEVICE_LIST_ACK, message.getType());
+        assertEquals(10, message.getDeviceCount());
+        assertEquals("f0fe6b0d0000", message.getDeviceMac(0));
+        assertEquals("02000002", message.getDeviceType(0));
+        assertEquals("f0fe6b0d0090", message.getDeviceMac(9));
+        assertEquals("10000000", message.getDeviceType(9));
+    }
+
+    @Test
+    public void resetsMessageBetweenDecodes() {
+        assertTrue(decode(HEARTBEAT));
+        assertTrue(decode("{\"msgType\":\"WriteDeviceAck\",\"mac\":\"cc\",\"data\":{}}"));
+        assertEquals(MotionblindsMessage.Type.WRITE_DEVICE_ACK, message.getType());
+        assertEquals("", message.getDeviceType());
+        assertEquals("", message.getToken());
+        assertFalse(message.has(MotionblindsMessage.CURRENT_POSITION));
+        assertFalse(message.has(MotionblindsMessage.RSSI));
+    }
+
+    @Test
+    public void unknownTypeIsDecoded() {
+        assertTrue(decode("{\"msgType\":\"Something\",\"mac\":\"dd\"}"));
+        assertEquals(MotionblindsMessage.Type.UNKNOWN, message.getType());
+    }
+
+    @Test
+    public void rejectsEveryTruncation() {
+        byte[] bytes = HEARTBEAT.getBytes(StandardCharsets.US_ASCII);
+        for (int length = 0; length < bytes.length; length++) {
+            assertFalse(decoder.decode(ByteBuffer.wrap(bytes, 0, length), message), "truncated to " + length);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedMessages() {
+        assertFalse(decode(""));
+        assertFalse(decode("   "));
+        assertFalse(decode("[]"));
+        assertFalse(decode("Heartbeat"));
+        assertFalse(decode("{\"msgType\" \"Heartbeat\"}"));
+        assertFalse(decode("{\"msgType\":\"Heartbeat\" \"mac\":\"aa\"}"));
+        assertFalse(decode("{msgType:\"Heartbeat\"}"));
+        assertFalse(decode("{\"msgType\":\"Heartbeat\",\"data\":{\"RSSI\":-}}"));
+        assertFalse(decode("{\"msgType\":\"Heartbeat\",\"data\":{\"RSSI\":-52}"));
+        assertFalse(decode("{\"msgType\":\"Heartbeat\",\"extra\":[1,2}"));
+        assertFalse(decode("{\"msgType\":\"Heartbeat\",\"mac\":\"aa}"));
+    }
+
+    @Test
+    public void readsBetweenPositionAndLimitWithoutMovingThem() {
+        byte[] bytes = ("xx" + HEARTBEAT + "yy").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        buffer.position(2).limit(bytes.length - 2);
+        assertTrue(decoder.decode(buffer, message));
+        assertEquals(2, buffer.position());
+        assertEquals(bytes.length - 2, buffer.limit());
+        assertEquals("483fda1eb16e", message.getMac());
+    }
+
+    private boolean decode(String json) {
+        return decoder.decode(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), message);
+    }
+}
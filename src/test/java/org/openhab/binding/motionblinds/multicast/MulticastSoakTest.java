@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.dto.CurtainMotor;
+import org.openhab.binding.motionblinds.dto.MotionblindsMessage;
+import org.openhab.core.net.NetworkAddressService;
+
+/**
+ * Runs the {@link MotionblindsMulticastManager} against a {@link GatewaySimulator} with a few hundred
+ * motors on the loopback interface, which loses and reorders datagrams. Both sides use ephemeral ports.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class MulticastSoakTest {
+    private static final int GATEWAYS = 6;
+    // below the capacity of the interactive lane of a gateway, every command of a burst is accepted
+    private static final int MOTORS = 48;
+    private static final int ROUNDS = 3;
+    private static final int BURST = 3;
+    private static final int COPIES = 3;
+    // motors of the Motion kind need about 30 s from open to closed, the test runs them 15 times faster
+    private static final long MILLIS_PER_PERCENT = 20;
+    private static final long HEARTBEAT_MILLIS = 250;
+    private static final double LOSS_RATE = 0.3;
+    private static final double REORDER_RATE = 0.3;
+    private static final String KEY = "6c14f2b3-0a52-4f";
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(20);
+    // a lost first copy is sent again after 500 ms, on top of the longest move of a round
+    private static final long MAX_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final MotionblindsCommandEncoder encoder = new MotionblindsCommandEncoder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // System.nanoTime() of the last command of the round, by motor
+    private final Map<String, Long> commanded = new ConcurrentHashMap<>();
+    private volatile int target = -1;
+    private final GatewaySimulator simulator;
+    private final MotionblindsMulticastManager mcm;
+
+    public MulticastSoakTest() throws IOException {
+        simulator = new GatewaySimulator(GATEWAYS, MOTORS, MILLIS_PER_PERCENT, HEARTBEAT_MILLIS, 1, LOSS_RATE,
+                REORDER_RATE);
+        // bound to a free port, the simulator learns it at the start
+        mcm = new MotionblindsMulticastManager(mock(NetworkAddressService.class),
+                MotionblindsMulticastManager.DEFAULT_MULTICAST_GROUP, 0, simulator.getPort());
+    }
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        mcm.addDeviceUpdateListener(this::deviceUpdated);
+        mcm.start();
+        await(() -> mcm.getLocalPort() > 0, "manager bound");
+        simulator.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), mcm.getLocalPort()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mcm.stop();
+        simulator.close();
+    }
+
+    @Test
+    public void deliversTheLatestCommandDespiteLossAndReordering() throws Exception {
+        simulator.announce();
+        await(this::allLearned, "gateways and motors learned");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int position = position(round, BURST - 1);
+            target = position;
+            for (String gatewayMac : simulator.getGatewayMacs()) {
+                GatewaySession session = mcm.getSession(gatewayMac);
+                assertNotNull(session);
+                String accessToken = encoder.accessToken(session, KEY);
+                assertNotNull(accessToken);
+                for (String mac : simulator.getMotorMacs(gatewayMac)) {
+                    CurtainMotor motor = mcm.getDeviceRegistry().getOrCreate(mac);
+                    // a burst of commands, of which only the last one matters
+                    for (int i = 0; i < BURST; i++) {
+                        if (i == BURST - 1) {
+                            commanded.put(mac, System.nanoTime());
+                        }
+                        assertTrue(mcm.send(mac, encoder.writeTargetPosition(motor, accessToken, position(round, i)),
+                                COPIES));
+                    }
+                }
+            }
+            await(() -> allAt(position), "all motors at " + position);
+        }
+
+        long accepted = 0;
+        long coalesced = 0;
+        long rejected = 0;
+        long sent = 0;
+        for (GatewaySession session : mcm.getSessions()) {
+            accepted += session.getSendQueue().getAccepted();
+            coalesced += session.getSendQueue().getCoalesced();
+            rejected += session.getSendQueue().getRejected() + session.getSendQueue().getDropped();
+            sent += session.getSent();
+        }
+        MulticastMetrics metrics = mcm.getMetrics();
+        // datagrams the loopback socket of the simulator had no room for
+        long socketDrops = sent - simulator.getReceived();
+        String summary = String.format(
+                "latency p50 %d ms, p99 %d ms, max %d ms; ack p50 %d ms, p99 %d ms; lost %d, dropped by socket %d, "
+                        + "reordered %d, retransmits %d, cancelled %d",
+                millis(latency.getPercentile(50)), millis(latency.getPercentile(99)), millis(latency.getMax()),
+                millis(metrics.getAckRoundTrip().getPercentile(50)),
+                millis(metrics.getAckRoundTrip().getPercentile(99)), simulator.getLost(), socketDrops,
+                simulator.getReordered(), metrics.getRetransmits(), metrics.getRetransmitsCancelled());
+
+        assertEquals(GATEWAYS * MOTORS * ROUNDS * BURST, accepted, summary);
+        assertEquals(0, rejected, summary);
+        assertTrue(coalesced > 0, "no command was coalesced");
+        assertTrue(socketDrops >= 0, summary);
+        // all datagrams after the first of a command that was not replaced in the queue are retransmissions
+        assertEquals(accepted - coalesced, sent - metrics.getRetransmits(), summary);
+        // every such command reached its gateway, unless its first copy was lost and the late answer to an
+        // older command cancelled the others: answers do not name their request
+        long missing = accepted - coalesced - simulator.getRequests();
+        assertTrue(missing >= 0 && missing <= simulator.getLost() + socketDrops, "missing " + missing + ", " + summary);
+        assertTrue(simulator.getLost() > 0 && simulator.getReordered() > 0, summary);
+        assertTrue(metrics.getRetransmitsCancelled() > 0, summary);
+        // no update of the registry was lost on the way to the listener
+        assertEquals(0, metrics.getUpdatesDropped(), summary);
+        assertEquals(0, metrics.getParseFailures(), summary);
+        assertEquals(GATEWAYS * MOTORS * ROUNDS, latency.getCount(), summary);
+        assertTrue(latency.getPercentile(99) < MAX_LATENCY_NANOS, summary);
+        assertTrue(simulator.getReports() >= GATEWAYS * MOTORS * ROUNDS, summary);
+        // the gateways kept sending their Heartbeat while the motors moved
+        assertTrue(simulator.getHeartbeats() > GATEWAYS * ROUNDS, summary);
+    }
+
+    /**
+     * Records the time from the last command of a round until the listener sees the motor at its target.
+     */
+    private void deviceUpdated(CurtainMotor motor, MotionblindsMessage.Type type) {
+        Long since = commanded.get(motor.getMac());
+        if (since != null && motor.getCurrentPosition() == target && !motor.isMoving()
+                && commanded.remove(motor.getMac(), since)) {
+            latency.record(System.nanoTime() - since);
+        }
+    }
+
+    private boolean allLearned() {
+        for (String gatewayMac : simulator.getGatewayMacs()) {
+            GatewaySession session = mcm.getSession(gatewayMac);
+            if (session == null || session.getAddress() == null || session.getToken().isEmpty()) {
+                return false;
+            }
+            for (String mac : simulator.getMotorMacs(gatewayMac)) {
+                if (mcm.getDeviceRegistry().getMotor(mac) == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean allAt(int position) {
+        if (!commanded.isEmpty()) {
+            return false;
+        }
+        for (String gatewayMac : simulator.getGatewayMacs()) {
+            for (String mac : simulator.getMotorMacs(gatewayMac)) {
+                CurtainMotor motor = mcm.getDeviceRegistry().getMotor(mac);
+                if (simulator.getPosition(mac) != position || motor == null
+                        || motor.getCurrentPosition() != position) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int position(int round, int index) {
+        return 10 + round * 30 + index * 7;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("timed out waiting for " + description);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager.Pack;
+import org.openhab.core.net.NetworkAddressService;
+
+/**
+ * Tests for {@link RetransmitScheduler}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class RetransmitSchedulerTest {
+    private static final long START = 1_000_000_000L;
+    private static final long TICK = RetransmitScheduler.TICK_NANOS;
+    // one full turn of the 64 slot wheel
+    private static final long TURN = 64 * TICK;
+
+    private final MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(
+            mock(NetworkAddressService.class));
+    private final MulticastMetrics metrics = new MulticastMetrics();
+    private final RetransmitScheduler scheduler = new RetransmitScheduler(START, metrics);
+    private final List<Pack> due = new ArrayList<>();
+
+    @Test
+    public void firesWhenDueAndNotBefore() {
+        Pack pack = pack("aa");
+        scheduler.schedule(pack, START, TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, scheduler.size());
+        assertEquals(0, scheduler.nanosUntilNextTick(START));
+
+        scheduler.expire(START + TimeUnit.MILLISECONDS.toNanos(499), due);
+        assertTrue(due.isEmpty());
+        scheduler.expire(START + TimeUnit.MILLISECONDS.toNanos(500), due);
+        assertEquals(List.of(pack), due);
+        assertEquals(0, scheduler.size());
+        assertEquals(-1, scheduler.nanosUntilNextTick(START));
+    }
+
+    @Test
+    public void firesAcrossRoundsOfTheWheel() {
+        Pack later = pack("aa");
+        Pack sooner = pack("bb");
+        // same slot, one and three turns of the wheel ahead
+        scheduler.schedule(later, START, 3 * TURN + 5 * TICK);
+        scheduler.schedule(sooner, START, TURN + 5 * TICK);
+
+        scheduler.expire(START + 5 * TICK, due);
+        assertTrue(due.isEmpty());
+        scheduler.expire(START + TURN + 5 * TICK - 1, due);
+        assertTrue(due.isEmpty());
+        scheduler.expire(START + TURN + 5 * TICK, due);
+        assertEquals(List.of(sooner), due);
+
+        due.clear();
+        scheduler.expire(START + 2 * TURN + 5 * TICK, due);
+        assertTrue(due.isEmpty());
+        scheduler.expire(START + 3 * TURN + 5 * TICK, due);
+        assertEquals(List.of(later), due);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void catchesUpAfterALongPause() {
+        Pack first = pack("aa");
+        Pack second = pack("bb");
+        scheduler.schedule(first, START, 2 * TICK);
+        scheduler.schedule(second, START, 10 * TURN);
+        scheduler.expire(START + 20 * TURN, due);
+        assertEquals(List.of(first, second), due);
+    }
+
+    @Test
+    public void schedulesRelativeToNowAfterIdle() {
+        scheduler.expire(START + 5 * TURN, due);
+        Pack pack = pack("aa");
+        scheduler.schedule(pack, START + 5 * TURN, 10 * TICK);
+        scheduler.expire(START + 5 * TURN + 9 * TICK, due);
+        assertTrue(due.isEmpty());
+        scheduler.expire(START + 5 * TURN + 10 * TICK, due);
+        assertEquals(List.of(pack), due);
+    }
+
+    @Test
+    public void acknowledgeCancelsAllPacksOfTheMac() {
+        Pack first = pack("aa");
+        Pack second = pack("aa");
+        Pack other = pack("bb");
+        first.firstSent = START;
+        second.firstSent = START + 2 * TICK;
+        scheduler.schedule(first, START, 10 * TICK);
+        scheduler.schedule(second, START, 10 * TICK);
+        scheduler.schedule(other, START, 10 * TICK);
+
+        scheduler.acknowledge("aa", START + 5 * TICK);
+        assertEquals(1, scheduler.size());
+        assertEquals(0, first.remaining);
+        assertEquals(6, metrics.getRetransmitsCancelled());
+        MulticastMetrics.RoundTrip roundTrip = metrics.getRoundTrip("aa");
+        assertNotNull(roundTrip);
+        assertEquals(3 * TICK, roundTrip.getLast());
+
+        scheduler.expire(START + 10 * TICK, due);
+        assertEquals(List.of(other), due);
+        assertEquals(0, scheduler.cancel("aa"));
+    }
+
+    @Test
+    public void donePacksAreNoLongerAcknowledged() {
+        Pack pack = pack("aa");
+        scheduler.schedule(pack, START, TICK);
+        scheduler.expire(START + TICK, due);
+        scheduler.done(pack);
+        scheduler.acknowledge("aa", START + 2 * TICK);
+        assertNull(metrics.getRoundTrip("aa"));
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        scheduler.schedule(pack("aa"), START, TICK);
+        scheduler.schedule(pack("bb"), START, 2 * TURN);
+        scheduler.clear();
+        assertEquals(0, scheduler.size());
+        scheduler.expire(START + 3 * TURN, due);
+        assertTrue(due.isEmpty());
+        assertEquals(0, scheduler.cancel("aa"));
+    }
+
+    private Pack pack(String mac) {
+        return mcm.new Pack(3, "{}", mac, true);
+    }
+}
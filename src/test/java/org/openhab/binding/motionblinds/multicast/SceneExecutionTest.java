@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.net.NetworkAddressService;
+
+/**
+ * Tests for {@link SceneExecution}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class SceneExecutionTest {
+    private static final long START = 1_000_000L;
+
+    @Test
+    public void emptySceneIsComplete() {
+        SceneExecution scene = new SceneExecution(new String[0]);
+        assertTrue(scene.getCompletion().isDone());
+        assertEquals(0, scene.getSendSpread());
+        assertEquals(0, scene.getAckSpread());
+    }
+
+    @Test
+    public void measuresSpreadsAndCompletesWhenAllAnswered() {
+        SceneExecution scene = new SceneExecution(new String[] { "aa", "bb", "cc" });
+        scene.sent(0, START);
+        scene.sent(1, START + 300);
+        scene.sent(2, START + 100);
+        scene.acknowledged(1, START + 5_000);
+        scene.acknowledged(0, START + 4_000);
+        assertFalse(scene.getCompletion().isDone());
+        assertEquals(List.of("cc"), scene.getMissing());
+        assertEquals(2, scene.getAcknowledged());
+
+        scene.acknowledged(2, START + 4_500);
+        assertTrue(scene.getCompletion().isDone());
+        assertEquals(3, scene.getAcknowledged());
+        assertEquals(List.of(), scene.getMissing());
+        assertEquals(300, scene.getSendSpread());
+        assertEquals(1_000, scene.getAckSpread());
+    }
+
+    @Test
+    public void repeatedAckKeepsTheFirstTime() {
+        SceneExecution scene = new SceneExecution(new String[] { "aa", "bb" });
+        scene.acknowledged(0, START);
+        scene.acknowledged(0, START + 1_000);
+        assertFalse(scene.getCompletion().isDone());
+        scene.acknowledged(1, START + 200);
+        assertEquals(200, scene.getAckSpread());
+    }
+
+    @Test
+    public void abandonedCommandsAreNotWaitedFor() {
+        SceneExecution scene = new SceneExecution(new String[] { "aa", "bb" });
+        scene.sent(0, START);
+        scene.acknowledged(0, START + 100);
+        scene.abandoned(1);
+        scene.abandoned(1);
+        assertTrue(scene.getCompletion().isDone());
+        assertEquals(1, scene.getAcknowledged());
+        assertEquals(List.of("bb"), scene.getMissing());
+        assertEquals(0, scene.getSendSpread());
+    }
+
+    @Test
+    public void newerSceneAbandonsTheCommandOfTheOlderOne() {
+        MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(mock(NetworkAddressService.class));
+        SceneExecution first = mcm.sendScene(new String[] { "aa", "bb" }, commands(2), 3);
+        SceneExecution second = mcm.sendScene(new String[] { "bb" }, commands(1), 3);
+
+        assertFalse(first.getCompletion().isDone());
+        first.acknowledged(0, START);
+        assertTrue(first.getCompletion().isDone());
+        assertEquals(List.of("bb"), first.getMissing());
+        assertFalse(second.getCompletion().isDone());
+        // the queued command for bb was replaced, not added
+        assertEquals(2, mcm.getSendQueue().size());
+        assertEquals(1, mcm.getSendQueue().getCoalesced());
+    }
+
+    private static byte[][] commands(int count) {
+        byte[][] commands = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            commands[i] = "{}".getBytes(StandardCharsets.UTF_8);
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2010-2024 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.motionblinds.multicast;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.binding.motionblinds.multicast.MotionblindsMulticastManager.Pack;
+import org.openhab.binding.motionblinds.multicast.SendQueue.Lane;
+import org.openhab.core.net.NetworkAddressService;
+
+/**
+ * Tests for {@link SendQueue}.
+ *
+ * @author Petr Shatsillo - Initial contribution
+ */
+@NonNullByDefault
+public class SendQueueTest {
+    private final MotionblindsMulticastManager mcm = new MotionblindsMulticastManager(
+            mock(NetworkAddressService.class));
+    private final SendQueue queue = new SendQueue(2, 2);
+
+    @Test
+    public void coalescesCommandsForTheSameMac() {
+        Pack first = command("aa");
+        Pack other = command("bb");
+        Pack latest = command("aa");
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(other));
+        // replaces the queued command, so it fits although the lane is full
+        assertTrue(queue.offer(latest));
+
+        assertEquals(1, queue.getCoalesced());
+        assertEquals(0, queue.getRejected());
+        assertEquals(2, queue.size());
+        assertSame(other, queue.poll(Lane.INTERACTIVE));
+        assertSame(latest, queue.poll(Lane.INTERACTIVE));
+        assertNull(queue.poll(Lane.INTERACTIVE));
+        assertTrue(queue.isEmpty(Lane.INTERACTIVE));
+    }
+
+    @Test
+    public void rejectsCommandsWhenFull() {
+        assertTrue(queue.offer(command("aa")));
+        assertTrue(queue.offer(command("bb")));
+        assertFalse(queue.offer(command("cc")));
+        assertFalse(queue.offer(command("dd")));
+
+        assertEquals(2, queue.getRejected());
+        assertEquals(2, queue.getAccepted());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void commandsAreNotCoalescedOnceSent() {
+        Pack first = command("aa");
+        assertTrue(queue.offer(first));
+        assertSame(first, queue.poll(Lane.INTERACTIVE));
+        Pack second = command("aa");
+        assertTrue(queue.offer(second));
+        assertEquals(0, queue.getCoalesced());
+        assertSame(second, queue.poll(Lane.INTERACTIVE));
+    }
+
+    @Test
+    public void supersedesCommandQueuedElsewhere() {
+        Pack stale = command("aa");
+        Pack other = command("bb");
+        assertTrue(queue.offer(stale));
+        assertTrue(queue.offer(other));
+        assertTrue(queue.supersede("aa"));
+        assertFalse(queue.supersede("aa"));
+        assertFalse(queue.supersede("cc"));
+
+        assertEquals(1, queue.getCoalesced());
+        assertEquals(1, queue.size());
+        assertSame(other, queue.poll(Lane.INTERACTIVE));
+        assertNull(queue.poll(Lane.INTERACTIVE));
+    }
+
+    @Test
+    public void dropsOldestPollWhenFull() {
+        Pack first = poll("aa");
+        Pack second = poll("bb");
+        Pack third = poll("cc");
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(second));
+        assertTrue(queue.offer(third));
+
+        assertEquals(1, queue.getDropped());
+        assertEquals(0, queue.getRejected());
+        assertSame(second, queue.poll(Lane.BACKGROUND));
+        assertSame(third, queue.poll(Lane.BACKGROUND));
+        assertNull(queue.poll(Lane.BACKGROUND));
+    }
+
+    @Test
+    public void lanesAreIndependent() {
+        assertTrue(queue.offer(poll("aa")));
+        assertTrue(queue.offer(poll("bb")));
+        assertTrue(queue.offer(command("aa")));
+        assertTrue(queue.offer(command("bb")));
+
+        assertEquals(4, queue.size());
+        assertEquals(4, queue.getHighWaterMark());
+        assertFalse(queue.isEmpty(Lane.INTERACTIVE));
+        assertFalse(queue.isEmpty(Lane.BACKGROUND));
+        assertEquals(4, queue.clear());
+        assertEquals(0, queue.size());
+        assertTrue(queue.isEmpty(Lane.INTERACTIVE));
+        assertTrue(queue.isEmpty(Lane.BACKGROUND));
+        assertEquals(4, queue.getHighWaterMark());
+    }
+
+    @Test
+    public void manyCoalescedCommandsStayBounded() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(queue.offer(command("aa")));
+        }
+        assertEquals(999, queue.getCoalesced());
+        assertEquals(1, queue.size());
+        assertNotNull(queue.poll(Lane.INTERACTIVE));
+        assertNull(queue.poll(Lane.INTERACTIVE));
+    }
+
+    private Pack command(String mac) {
+        return mcm.new Pack(3, "{}", mac, true);
+    }
+
+    private Pack poll(String mac) {
+        return mcm.new Pack(1, "{}", mac, false);
+    }
+}